@@ -0,0 +1,102 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.api;
+
+import java.util.UUID;
+
+/**
+ * An immutable snapshot of a single online player's exposure.
+ * 
+ * @author Trystan Cannon
+ */
+public final class ExposureSnapshot {
+    
+    /**
+     * UUID of the player.
+     */
+    private final UUID playerId;
+    
+    /**
+     * UUID of the world the player was in.
+     */
+    private final UUID worldId;
+    
+    /**
+     * Whether or not the player was exposed.
+     */
+    private final boolean exposed;
+    
+    /**
+     * The estimated <code>System.nanoTime</code> of the player's next damage.
+     * Only meaningful while <code>exposed</code>.
+     */
+    private final long damageDeadlineNanos;
+    
+    public ExposureSnapshot(UUID playerId, UUID worldId, boolean exposed, long damageDeadlineNanos) {
+        this.playerId = playerId;
+        this.worldId = worldId;
+        this.exposed = exposed;
+        this.damageDeadlineNanos = damageDeadlineNanos;
+    }
+    
+    /**
+     * @return UUID of the player.
+     */
+    public UUID getPlayerId() {
+        return playerId;
+    }
+    
+    /**
+     * @return UUID of the world the player was in.
+     */
+    public UUID getWorldId() {
+        return worldId;
+    }
+    
+    /**
+     * @return <code>true</code> if the player was without their space suit in a space world.
+     */
+    public boolean isExposed() {
+        return exposed;
+    }
+    
+    /**
+     * @return The estimated <code>System.nanoTime</code> of the player's next damage, only meaningful while exposed.
+     */
+    public long getDamageDeadlineNanos() {
+        return damageDeadlineNanos;
+    }
+    
+    /**
+     * @return Milliseconds until the player is next damaged, -1 if they are not exposed.
+     */
+    public long getMillisUntilDamage() {
+        if (!exposed) {
+            return -1;
+        }
+        
+        return Math.max(0, (damageDeadlineNanos - System.nanoTime()) / 1000000L);
+    }
+    
+}
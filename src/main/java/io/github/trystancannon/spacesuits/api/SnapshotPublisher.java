@@ -0,0 +1,141 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.api;
+
+import io.github.trystancannon.spacesuits.core.SpacesuitsPlugin;
+import io.github.trystancannon.spacesuits.event.SpacesuitListener;
+import io.github.trystancannon.spacesuits.timing.ExposureTimer;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.bukkit.World;
+
+/**
+ * A <code>SnapshotPublisher</code> is a <code>Runnable</code> which runs every
+ * tick on the main thread, comparing the plugin's state with the snapshot
+ * served by the <code>SnapshotSpacesuitsAPI</code> and publishing a new
+ * snapshot if anything has changed.
+ * 
+ * Deadlines are compared with a tolerance of one tick, so a player who stays
+ * exposed doesn't cause a new snapshot every tick.
+ * 
+ * @author Trystan Cannon
+ */
+public final class SnapshotPublisher implements Runnable {
+    
+    /**
+     * The plugin whose state is published.
+     */
+    private final SpacesuitsPlugin plugin;
+    
+    /**
+     * The API the snapshots are published to.
+     */
+    private final SnapshotSpacesuitsAPI api;
+    
+    public SnapshotPublisher(SpacesuitsPlugin plugin, SnapshotSpacesuitsAPI api) {
+        this.plugin = plugin;
+        this.api = api;
+    }
+    
+    /**
+     * Publishes a new snapshot if the space worlds or any player's exposure
+     * have changed since the last one.
+     */
+    @Override
+    public void run() {
+        Set<World> spaceWorlds = plugin.getSpaceWorlds();
+        Collection<SpacesuitListener> listeners = plugin.getSuitListeners();
+        Set<UUID> publishedWorldIds = api.getPublishedSpaceWorldIds();
+        Map<UUID, ExposureSnapshot> publishedExposures = api.getPublishedExposures();
+        
+        boolean changed = spaceWorlds.size() != publishedWorldIds.size() || listeners.size() != publishedExposures.size();
+        
+        for (World spaceWorld : spaceWorlds) {
+            if (changed) {
+                break;
+            }
+            
+            changed = !publishedWorldIds.contains(spaceWorld.getUID());
+        }
+        
+        for (SpacesuitListener listener : listeners) {
+            if (changed) {
+                break;
+            }
+            
+            changed = !matches(publishedExposures.get(listener.getAstronaut().getUniqueId()), listener);
+        }
+        
+        if (!changed) {
+            return;
+        }
+        
+        Set<UUID> worldIds = new HashSet<>();
+        Map<UUID, ExposureSnapshot> exposures = new HashMap<>();
+        
+        for (World spaceWorld : spaceWorlds) {
+            worldIds.add(spaceWorld.getUID());
+        }
+        
+        for (SpacesuitListener listener : listeners) {
+            UUID playerId = listener.getAstronaut().getUniqueId();
+            ExposureSnapshot published = publishedExposures.get(playerId);
+            
+            // Reuse snapshots which haven't changed.
+            exposures.put(playerId, matches(published, listener) ? published : takeSnapshot(listener));
+        }
+        
+        api.publish(worldIds, exposures);
+    }
+    
+    /**
+     * @param listener
+     * @return A snapshot of the exposure of the listener's player.
+     */
+    private static ExposureSnapshot takeSnapshot(SpacesuitListener listener) {
+        ExposureTimer timer = listener.getExposureTimer();
+        return new ExposureSnapshot(listener.getAstronaut().getUniqueId(), listener.getAstronaut().getWorld().getUID(), timer.isExposed(), timer.getDamageDeadlineNanos());
+    }
+    
+    /**
+     * @param published
+     * @param listener
+     * 
+     * @return <code>true</code> if the published snapshot still describes the listener's player.
+     */
+    private static boolean matches(ExposureSnapshot published, SpacesuitListener listener) {
+        ExposureTimer timer = listener.getExposureTimer();
+        
+        if (published == null || published.isExposed() != timer.isExposed() || !published.getWorldId().equals(listener.getAstronaut().getWorld().getUID())) {
+            return false;
+        }
+        
+        return !timer.isExposed() || Math.abs(published.getDamageDeadlineNanos() - timer.getDamageDeadlineNanos()) < ExposureTimer.NANOS_PER_TICK;
+    }
+    
+}
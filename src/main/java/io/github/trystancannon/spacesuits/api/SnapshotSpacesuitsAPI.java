@@ -0,0 +1,121 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.api;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import org.bukkit.World;
+
+/**
+ * The <code>SpacesuitsAPI</code> registered with Bukkit's <code>ServicesManager</code>.
+ * 
+ * Answers come from an immutable snapshot held in a single volatile field.
+ * The <code>SnapshotPublisher</code> replaces the whole snapshot from the main
+ * thread; readers on any thread just read the field, so they never take a lock
+ * and always see a consistent snapshot.
+ * 
+ * @author Trystan Cannon
+ */
+public final class SnapshotSpacesuitsAPI implements SpacesuitsAPI {
+    
+    /**
+     * The most recently published snapshot.
+     */
+    private volatile Snapshot snapshot = new Snapshot(Collections.<UUID>emptySet(), Collections.<UUID, ExposureSnapshot>emptyMap());
+    
+    @Override
+    public boolean isSpaceWorld(UUID worldId) {
+        return snapshot.spaceWorldIds.contains(worldId);
+    }
+    
+    @Override
+    public boolean isSpaceWorld(World world) {
+        return isSpaceWorld(world.getUID());
+    }
+    
+    @Override
+    public Set<UUID> getSpaceWorldIds() {
+        return snapshot.spaceWorldIds;
+    }
+    
+    @Override
+    public boolean isExposed(UUID playerId) {
+        ExposureSnapshot exposure = getExposure(playerId);
+        return exposure != null && exposure.isExposed();
+    }
+    
+    @Override
+    public long getMillisUntilDamage(UUID playerId) {
+        ExposureSnapshot exposure = getExposure(playerId);
+        return exposure == null ? -1 : exposure.getMillisUntilDamage();
+    }
+    
+    @Override
+    public ExposureSnapshot getExposure(UUID playerId) {
+        return snapshot.exposures.get(playerId);
+    }
+    
+    /**
+     * @return The UUIDs of every space world in the current snapshot.
+     */
+    Set<UUID> getPublishedSpaceWorldIds() {
+        return snapshot.spaceWorldIds;
+    }
+    
+    /**
+     * @return The exposure of every online player in the current snapshot.
+     */
+    Map<UUID, ExposureSnapshot> getPublishedExposures() {
+        return snapshot.exposures;
+    }
+    
+    /**
+     * Replaces the current snapshot. The given collections must not be changed
+     * afterwards.
+     * 
+     * @param spaceWorldIds
+     * @param exposures 
+     */
+    void publish(Set<UUID> spaceWorldIds, Map<UUID, ExposureSnapshot> exposures) {
+        snapshot = new Snapshot(Collections.unmodifiableSet(spaceWorldIds), Collections.unmodifiableMap(exposures));
+    }
+    
+    /**
+     * The state published to readers at one moment.
+     */
+    private static final class Snapshot {
+        
+        private final Set<UUID> spaceWorldIds;
+        private final Map<UUID, ExposureSnapshot> exposures;
+        
+        public Snapshot(Set<UUID> spaceWorldIds, Map<UUID, ExposureSnapshot> exposures) {
+            this.spaceWorldIds = spaceWorldIds;
+            this.exposures = exposures;
+        }
+        
+    }
+    
+}
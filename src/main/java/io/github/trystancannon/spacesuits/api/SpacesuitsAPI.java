@@ -0,0 +1,82 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.api;
+
+import java.util.Set;
+import java.util.UUID;
+import org.bukkit.World;
+
+/**
+ * Read-only access to the Space Suits plugin's state for other plugins, such as
+ * scoreboards, HUDs and placeholder providers.
+ * 
+ * Get it through Bukkit's <code>ServicesManager</code>:
+ * 
+ *  SpacesuitsAPI api = getServer().getServicesManager().load(SpacesuitsAPI.class);
+ * 
+ * Every method is safe to call from any thread and never blocks or touches the
+ * main server thread. Answers come from a snapshot which the plugin republishes
+ * at the end of any tick in which something changed, so they may be up to one
+ * tick old.
+ * 
+ * @author Trystan Cannon
+ */
+public interface SpacesuitsAPI {
+    
+    /**
+     * @param worldId UUID of the world.
+     * @return <code>true</code> if the world is a space world.
+     */
+    boolean isSpaceWorld(UUID worldId);
+    
+    /**
+     * @param world
+     * @return <code>true</code> if the world is a space world.
+     */
+    boolean isSpaceWorld(World world);
+    
+    /**
+     * @return The UUIDs of every space world.
+     */
+    Set<UUID> getSpaceWorldIds();
+    
+    /**
+     * @param playerId UUID of the player.
+     * @return <code>true</code> if the player is online and without their space suit in a space world.
+     */
+    boolean isExposed(UUID playerId);
+    
+    /**
+     * @param playerId UUID of the player.
+     * @return Milliseconds until the player is next damaged, -1 if they are not exposed.
+     */
+    long getMillisUntilDamage(UUID playerId);
+    
+    /**
+     * @param playerId UUID of the player.
+     * @return The player's exposure, <code>null</code> if they are not online.
+     */
+    ExposureSnapshot getExposure(UUID playerId);
+    
+}
@@ -0,0 +1,211 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.command;
+
+import io.github.trystancannon.spacesuits.core.SpacesuitsPlugin;
+import io.github.trystancannon.spacesuits.event.SpacesuitListener;
+import io.github.trystancannon.spacesuits.file.ExportFormat;
+import io.github.trystancannon.spacesuits.file.ExportRecord;
+import io.github.trystancannon.spacesuits.file.StateExporter;
+import io.github.trystancannon.spacesuits.stats.ExposureHistory;
+import io.github.trystancannon.spacesuits.timing.ExposureTimer;
+import java.io.File;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.bukkit.World;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Handles the execution of the command /spacesuits export [csv|jsonl], which
+ * writes a snapshot of every space world, every setting, and the exposure
+ * state of every online player to a file in the plugin's exports folder.
+ * 
+ * The snapshot is taken on the main thread so that it is consistent, then
+ * written to the file off of the main thread by a <code>StateExporter</code>.
+ * 
+ * @author Trystan Cannon
+ */
+public class ExportCommandExecutor extends SubCommandExecutor {
+    
+    /**
+     * The name for this sub-command, used to execute the command by typing it
+     * as /spacesuits [name] [args...].
+     */
+    public static final String COMMAND_NAME = "export";
+    
+    private static final String[] WORLD_FIELDS = {"id", "name"};
+    private static final String[] SETTING_FIELDS = {"key", "value"};
+    private static final String[] PLAYER_FIELDS = {"id", "name", "world", "exposed", "exposure_ms"};
+    private static final String[] HISTORY_FIELDS = {"id", "name", "total_exposure_ms", "total_damage", "last_hour_exposure_ms", "last_hour_damage"};
+    
+    /**
+     * Whether or not an export is currently being written. Only one export
+     * may run at a time.
+     */
+    private final AtomicBoolean exporting = new AtomicBoolean(false);
+    
+    public ExportCommandExecutor(String name, BaseCommandExecutor baseExecutor) {
+        super(name, baseExecutor);
+    }
+    
+    /**
+     * Takes a snapshot of the plugin's state and starts writing it to a new file
+     * in the format given by the first argument (csv by default). The sender is
+     * told of the export's progress, and of the file's checksum once it is done.
+     * 
+     * @param sender
+     * @param args
+     * 
+     * @return <code>true</code> if the export was started.
+     */
+    @Override
+    public boolean execute(final CommandSender sender, String[] args) {
+        ExportFormat format = args.length > 0 ? ExportFormat.fromExtension(args[0]) : ExportFormat.CSV;
+        
+        if (format == null) {
+            SpacesuitsPlugin.sendLabeledError(sender, "Unknown format " + args[0] + ". Use csv or jsonl.");
+            return false;
+        }
+        
+        if (!exporting.compareAndSet(false, true)) {
+            SpacesuitsPlugin.sendLabeledError(sender, "An export is already being written.");
+            return false;
+        }
+        
+        // Let another export run if this one can't be started:
+        boolean started = false;
+        
+        try {
+            startExport(sender, format);
+            started = true;
+        } finally {
+            if (!started) {
+                exporting.set(false);
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Takes the snapshot and schedules the <code>StateExporter</code> which
+     * writes it. The <code>exporting</code> flag must already be set, and is
+     * cleared once the export completes or fails.
+     * 
+     * @param sender
+     * @param format 
+     */
+    private void startExport(final CommandSender sender, ExportFormat format) {
+        final SpacesuitsPlugin plugin = getBaseExecutor().getPlugin();
+        File exportFolder = new File(plugin.getDataFolder(), "exports");
+        
+        // Create the exports folder if it doesn't already exist:
+        if (!exportFolder.exists()) {
+            exportFolder.mkdirs();
+        }
+        
+        File exportFile = new File(exportFolder, "spacesuits-" + new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date()) + "." + format.getExtension());
+        List<ExportRecord> snapshot = takeSnapshot(plugin);
+        
+        SpacesuitsPlugin.sendLabeledMessage(sender, "Exporting " + snapshot.size() + " records to " + exportFile.getName() + "...");
+        
+        plugin.getServer().getScheduler().runTaskAsynchronously(plugin, new StateExporter(exportFile, format, snapshot, new StateExporter.ProgressListener() {
+            
+            @Override
+            public void onProgress(int recordsWritten, int totalRecords) {
+                tell("Exported " + recordsWritten + " of " + totalRecords + " records.", false);
+            }
+            
+            @Override
+            public void onComplete(File file, int records, long bytes, long checksum) {
+                exporting.set(false);
+                tell("Exported " + records + " records (" + bytes + " bytes) to " + file.getName() + ". CRC-32: " + String.format("%08x", checksum), true);
+            }
+            
+            @Override
+            public void onFailure(Throwable failure) {
+                exporting.set(false);
+                plugin.getLogger().warning("Export failed: " + failure);
+                tell("Export failed: " + (failure.getMessage() == null ? failure.toString() : failure.getMessage()), false);
+            }
+            
+            /**
+             * Sends the sender the given message from the main thread.
+             */
+            private void tell(final String message, final boolean success) {
+                plugin.getServer().getScheduler().runTask(plugin, new Runnable() {
+                    
+                    @Override
+                    public void run() {
+                        if (success) {
+                            SpacesuitsPlugin.sendLabeledSucces(sender, message);
+                        } else {
+                            SpacesuitsPlugin.sendLabeledMessage(sender, message);
+                        }
+                    }
+                    
+                });
+            }
+            
+        }));
+    }
+    
+    /**
+     * Copies the plugin's current state into a list of records. Must be called
+     * from the main thread.
+     * 
+     * @param plugin
+     * @return The snapshot.
+     */
+    private static List<ExportRecord> takeSnapshot(SpacesuitsPlugin plugin) {
+        List<ExportRecord> snapshot = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        
+        for (World spaceWorld : plugin.getSpaceWorlds()) {
+            snapshot.add(new ExportRecord("world", WORLD_FIELDS, spaceWorld.getUID().toString(), spaceWorld.getName()));
+        }
+        
+        for (Map.Entry<String, String> setting : plugin.getSettings().getValues().entrySet()) {
+            snapshot.add(new ExportRecord("setting", SETTING_FIELDS, setting.getKey(), setting.getValue()));
+        }
+        
+        for (SpacesuitListener listener : plugin.getSuitListeners()) {
+            ExposureTimer timer = listener.getExposureTimer();
+            snapshot.add(new ExportRecord("player", PLAYER_FIELDS, listener.getAstronaut().getUniqueId().toString(), listener.getAstronaut().getName(), listener.getAstronaut().getWorld().getName(), timer.isExposed(), timer.getExposureNanos() / 1000000L));
+        }
+        
+        for (Map.Entry<UUID, ExposureHistory> tracked : plugin.getExposureStats().getPlayerHistories().entrySet()) {
+            ExposureHistory history = tracked.getValue();
+            snapshot.add(new ExportRecord("history", HISTORY_FIELDS, tracked.getKey().toString(), history.getName(), history.getTotalExposureMillis(), history.getTotalDamage(), history.getMinutes().sumExposure(now, 60), history.getMinutes().sumDamage(now, 60)));
+        }
+        
+        return snapshot;
+    }
+    
+}
@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.command;
+
+import io.github.trystancannon.spacesuits.core.SpacesuitsPlugin;
+import io.github.trystancannon.spacesuits.stats.ExposureHistory;
+import io.github.trystancannon.spacesuits.stats.ExposureStats;
+import io.github.trystancannon.spacesuits.stats.TimeBucketRing;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Handles the execution of the command /spacesuits history [player], which
+ * shows how long the given player has been without their space suit and how
+ * often they have been damaged for it.
+ * 
+ * @author Trystan Cannon
+ */
+public class HistoryCommandExecutor extends SubCommandExecutor {
+    
+    /**
+     * The name for this sub-command, used to execute the command by typing it
+     * as /spacesuits [name] [args...].
+     */
+    public static final String COMMAND_NAME = "history";
+    
+    /**
+     * The number of most recent minutes broken down individually.
+     */
+    private static final int MINUTES_SHOWN = 5;
+    
+    public HistoryCommandExecutor(String name, BaseCommandExecutor baseExecutor) {
+        super(name, baseExecutor);
+    }
+    
+    /**
+     * Sends the sender the exposure history of the player named in the first
+     * argument: the last few minutes, the last hour, the last day, and the
+     * times of their most recent damage.
+     * 
+     * @param sender
+     * @param args
+     * 
+     * @return <code>true</code> if the command executes properly.
+     */
+    @Override
+    public boolean execute(CommandSender sender, String[] args) {
+        if (args.length < 1) {
+            SpacesuitsPlugin.sendLabeledError(sender, "Usage: /spacesuits " + COMMAND_NAME + " [player]");
+            return false;
+        }
+        
+        ExposureHistory history = getBaseExecutor().getPlugin().getExposureStats().findPlayerHistory(args[0]);
+        
+        if (history == null) {
+            SpacesuitsPlugin.sendLabeledError(sender, "No history for " + args[0] + ".");
+            return false;
+        }
+        
+        long now = System.currentTimeMillis();
+        TimeBucketRing minutes = history.getMinutes();
+        TimeBucketRing hours = history.getHours();
+        
+        SpacesuitsPlugin.sendLabeledMessage(sender, "Exposure history for " + history.getName() + ":");
+        
+        // Break down the last few minutes, newest first.
+        StringBuilder recentMinutes = new StringBuilder();
+        
+        for (int minutesAgo = 0; minutesAgo < MINUTES_SHOWN; minutesAgo++) {
+            recentMinutes.append(minutesAgo == 0 ? "" : ", ").append(ExposureStats.formatDuration(minutes.getExposure(now, minutesAgo)));
+        }
+        
+        sender.sendMessage(ChatColor.GRAY + "Last " + MINUTES_SHOWN + " minutes: " + ChatColor.WHITE + recentMinutes);
+        sender.sendMessage(ChatColor.GRAY + "Last hour: " + ChatColor.WHITE + ExposureStats.formatDuration(minutes.sumExposure(now, minutes.getSlots())) + ", " + minutes.sumDamage(now, minutes.getSlots()) + " hits");
+        sender.sendMessage(ChatColor.GRAY + "Last day: " + ChatColor.WHITE + ExposureStats.formatDuration(hours.sumExposure(now, hours.getSlots())) + ", " + hours.sumDamage(now, hours.getSlots()) + " hits");
+        sender.sendMessage(ChatColor.GRAY + "Total: " + ChatColor.WHITE + ExposureStats.formatDuration(history.getTotalExposureMillis()) + ", " + history.getTotalDamage() + " hits");
+        
+        long[] damageTimes = history.getRecentDamageTimes();
+        
+        if (damageTimes.length > 0) {
+            StringBuilder recentDamage = new StringBuilder();
+            
+            for (int index = 0; index < damageTimes.length; index++) {
+                recentDamage.append(index == 0 ? "" : ", ").append(ExposureStats.formatDuration(now - damageTimes[index]));
+            }
+            
+            sender.sendMessage(ChatColor.GRAY + "Recent hits (ago): " + ChatColor.WHITE + recentDamage);
+        }
+        
+        return true;
+    }
+    
+}
@@ -63,6 +63,9 @@ public class SpacesuitsBaseCommandExecutor extends BaseCommandExecutor implement
     public SpacesuitsBaseCommandExecutor(SpacesuitsPlugin plugin) {
         super(COMMAND_NAME, plugin);
         subCommandExecutors.add(new SetWorldCommandExecutor(SetWorldCommandExecutor.COMMAND_NAME, this));
+        subCommandExecutors.add(new TopCommandExecutor(TopCommandExecutor.COMMAND_NAME, this));
+        subCommandExecutors.add(new HistoryCommandExecutor(HistoryCommandExecutor.COMMAND_NAME, this));
+        subCommandExecutors.add(new ExportCommandExecutor(ExportCommandExecutor.COMMAND_NAME, this));
     }
     
     /**
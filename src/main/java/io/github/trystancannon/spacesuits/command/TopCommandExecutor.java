@@ -0,0 +1,89 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.command;
+
+import io.github.trystancannon.spacesuits.core.SpacesuitsPlugin;
+import io.github.trystancannon.spacesuits.stats.ExposureHistory;
+import io.github.trystancannon.spacesuits.stats.ExposureStats;
+import java.util.List;
+import java.util.UUID;
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+/**
+ * Handles the execution of the command /spacesuits top, which lists the players
+ * who have spent the most time without their space suits, along with how much
+ * exposure each space world has seen in the last hour.
+ * 
+ * @author Trystan Cannon
+ */
+public class TopCommandExecutor extends SubCommandExecutor {
+    
+    /**
+     * The name for this sub-command, used to execute the command by typing it
+     * as /spacesuits [name] [args...].
+     */
+    public static final String COMMAND_NAME = "top";
+    
+    public TopCommandExecutor(String name, BaseCommandExecutor baseExecutor) {
+        super(name, baseExecutor);
+    }
+    
+    /**
+     * Sends the sender the most exposed players, most exposed first, followed
+     * by the exposure and damage seen in each tracked world over the last hour.
+     * 
+     * @param sender
+     * @param args
+     * 
+     * @return <code>true</code> if the command executes properly.
+     */
+    @Override
+    public boolean execute(CommandSender sender, String[] args) {
+        ExposureStats stats = getBaseExecutor().getPlugin().getExposureStats();
+        List<UUID> topPlayers = stats.getTopPlayers();
+        
+        if (topPlayers.isEmpty()) {
+            SpacesuitsPlugin.sendLabeledMessage(sender, "No one has been without their space suit yet.");
+            return true;
+        }
+        
+        SpacesuitsPlugin.sendLabeledMessage(sender, "Most time spent without a space suit:");
+        
+        for (int rank = 0; rank < topPlayers.size(); rank++) {
+            UUID playerId = topPlayers.get(rank);
+            sender.sendMessage(ChatColor.GRAY + "" + (rank + 1) + ". " + ChatColor.WHITE + stats.getTopPlayerName(playerId) + ChatColor.GRAY + " - " + ExposureStats.formatDuration(stats.getTopPlayerExposure(playerId)));
+        }
+        
+        long now = System.currentTimeMillis();
+        SpacesuitsPlugin.sendLabeledMessage(sender, "Exposure by world in the last hour:");
+        
+        for (ExposureHistory worldHistory : stats.getWorldHistories()) {
+            sender.sendMessage(ChatColor.WHITE + worldHistory.getName() + ChatColor.GRAY + " - " + ExposureStats.formatDuration(worldHistory.getMinutes().sumExposure(now, 60)) + ", " + worldHistory.getMinutes().sumDamage(now, 60) + " hits");
+        }
+        
+        return true;
+    }
+    
+}
@@ -23,14 +23,34 @@
  */
 package io.github.trystancannon.spacesuits.core;
 
+import io.github.trystancannon.spacesuits.api.SnapshotPublisher;
+import io.github.trystancannon.spacesuits.api.SnapshotSpacesuitsAPI;
+import io.github.trystancannon.spacesuits.api.SpacesuitsAPI;
 import io.github.trystancannon.spacesuits.command.SpacesuitsBaseCommandExecutor;
 import io.github.trystancannon.spacesuits.event.SpacesuitListener;
+import io.github.trystancannon.spacesuits.event.SuitExposureEndEvent;
+import io.github.trystancannon.spacesuits.event.SuitChangeListener;
+import io.github.trystancannon.spacesuits.file.Settings;
 import io.github.trystancannon.spacesuits.file.Utils;
+import io.github.trystancannon.spacesuits.stats.ExposureStats;
+import io.github.trystancannon.spacesuits.sync.SharedDirectoryTransport;
+import io.github.trystancannon.spacesuits.sync.SyncDelta;
+import io.github.trystancannon.spacesuits.sync.SyncService;
+import io.github.trystancannon.spacesuits.sync.SyncTarget;
+import io.github.trystancannon.spacesuits.timing.AdaptiveCheckScheduler;
+import io.github.trystancannon.spacesuits.timing.TimingMode;
+import io.github.trystancannon.spacesuits.timing.TpsMonitor;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import org.bukkit.ChatColor;
 import org.bukkit.World;
@@ -40,6 +60,7 @@ import org.bukkit.event.EventHandler;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.ServicePriority;
 import org.bukkit.plugin.java.JavaPlugin;
 
 /**
@@ -47,7 +68,7 @@ import org.bukkit.plugin.java.JavaPlugin;
  * 
  * @author Trystan Cannon
  */
-public class SpacesuitsPlugin extends JavaPlugin implements Listener {
+public class SpacesuitsPlugin extends JavaPlugin implements Listener, SyncTarget {
     
     /**
      * Contains all of the <code>SpacesuitListener</code>s for the plugin.
@@ -57,7 +78,8 @@ public class SpacesuitsPlugin extends JavaPlugin implements Listener {
      * 
      * Each listener is a runnable which repeats itself every tick, checking if its
      * <code>Player</code> is without their armor in a world that requires them
-     * to do so.
+     * to do so. With the adaptive check scheduler, the <code>checkScheduler</code>
+     * runs the checks instead.
      * 
      * If the player is without their armor, they receive 1/2 heart of damage for
      * every ten seconds they are without it.
@@ -74,6 +96,107 @@ public class SpacesuitsPlugin extends JavaPlugin implements Listener {
      */
     private static final HashMap<World, Boolean> spaceWorlds = new HashMap<>();
     
+    /**
+     * Records how long players spend without their space suits in space worlds
+     * and how often they are damaged for it. Queried by /spacesuits top and
+     * /spacesuits history.
+     */
+    private final ExposureStats exposureStats = new ExposureStats();
+    
+    /**
+     * Times every server tick, recommending a longer check period while the
+     * server is overloaded.
+     */
+    private final TpsMonitor tpsMonitor = new TpsMonitor();
+    
+    /**
+     * The task ID of the <code>tpsMonitor</code>, -1 if it is not running.
+     */
+    private int tpsMonitorTaskId = -1;
+    
+    /**
+     * The plugin's settings, read from settings.txt in the data folder.
+     */
+    private Settings settings;
+    
+    /**
+     * How the time players spend without their suits is measured, as read
+     * from the settings.
+     */
+    private TimingMode timingMode = TimingMode.TICKS;
+    
+    /**
+     * Schedules the checks of every <code>SpacesuitListener</code> when the
+     * check-scheduler setting is adaptive. <code>null</code> when each listener
+     * schedules itself instead.
+     */
+    private AdaptiveCheckScheduler checkScheduler = null;
+    
+    /**
+     * The task ID of the <code>checkScheduler</code>, -1 if it is not running.
+     */
+    private int checkSchedulerTaskId = -1;
+    
+    /**
+     * The read-only API offered to other plugins through the <code>ServicesManager</code>.
+     */
+    private final SnapshotSpacesuitsAPI api = new SnapshotSpacesuitsAPI();
+    
+    /**
+     * The task ID of the <code>SnapshotPublisher</code> keeping the <code>api</code>
+     * up to date, -1 if it is not running.
+     */
+    private int snapshotPublisherTaskId = -1;
+    
+    /**
+     * Syncs space worlds and players' exposure with other servers when the
+     * sync-transport setting is not none. <code>null</code> otherwise.
+     */
+    private SyncService syncService = null;
+    
+    /**
+     * Exposure synced from other servers for players who are not online here,
+     * applied if they join. Only the <code>MAX_PENDING_EXPOSURES</code> most
+     * recently synced players are kept.
+     */
+    private final Map<UUID, Long> pendingExposures = new LinkedHashMap<UUID, Long>(16, 0.75f, true) {
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Long> eldest) {
+            return size() > MAX_PENDING_EXPOSURES;
+        }
+        
+    };
+    
+    /**
+     * The most players whose exposure synced from other servers is kept while
+     * they are not online here.
+     */
+    private static final int MAX_PENDING_EXPOSURES = 4096;
+    
+    /**
+     * Ticks between each sync if the sync-period-ticks setting is missing or invalid.
+     */
+    private static final long DEFAULT_SYNC_PERIOD_TICKS = 20L;
+    
+    /**
+     * Guards writes to the configuration file, which may be made from the
+     * main thread or an asynchronous task.
+     */
+    private final Object spaceWorldConfigLock = new Object();
+    
+    /**
+     * Counts the snapshots of the space worlds taken to be written to the
+     * configuration file. Main thread only.
+     */
+    private long spaceWorldConfigVersion = 0;
+    
+    /**
+     * The newest snapshot written to the configuration file, so that an older
+     * snapshot written late never replaces it. Guarded by <code>spaceWorldConfigLock</code>.
+     */
+    private long writtenSpaceWorldConfigVersion = 0;
+    
     /**
      * Loads the configuration file and creates all of the <code>SpacesuitListener</code>s
      * for currently online players.
@@ -90,15 +213,38 @@ public class SpacesuitsPlugin extends JavaPlugin implements Listener {
             getDataFolder().mkdirs();
         }
         
+        loadSettings();
+        getLogger().info("Measuring exposure in " + timingMode.getSettingName() + " mode.");
+        
+        // Time every tick so checks can be spread out while the server is overloaded. Only real time checks are spread out:
+        if (timingMode == TimingMode.REAL_TIME) {
+            tpsMonitorTaskId = getServer().getScheduler().scheduleSyncRepeatingTask(this, tpsMonitor, 1L, 1L);
+        }
+        
+        // Check players more or less often depending on how close they are to being damaged:
+        if (checkScheduler != null) {
+            checkSchedulerTaskId = getServer().getScheduler().scheduleSyncRepeatingTask(this, checkScheduler, 1L, 1L);
+            getServer().getPluginManager().registerEvents(new SuitChangeListener(this), this);
+        }
+        
         // Create listeners for all currently online players.
         for (Player onlinePlayer : getServer().getOnlinePlayers()) {
             suitListeners.put(onlinePlayer.getUniqueId(), new SpacesuitListener(onlinePlayer, this));
-            suitListeners.get(onlinePlayer.getUniqueId()).run();
+            startListener(suitListeners.get(onlinePlayer.getUniqueId()));
         }
         
         // Register for events.
         getServer().getPluginManager().registerEvents(this, this);
         
+        // Offer the read-only API to other plugins, republishing its snapshot whenever anything changes.
+        snapshotPublisherTaskId = getServer().getScheduler().scheduleSyncRepeatingTask(this, new SnapshotPublisher(this, api), 0L, 1L);
+        getServer().getServicesManager().register(SpacesuitsAPI.class, api, this, ServicePriority.Normal);
+        
+        // Keep space worlds and exposure in step with the other servers on the network.
+        if (syncService != null) {
+            syncService.start(this, getSyncPeriodTicks());
+        }
+        
         // Register commands with their executors.
         getCommand("spacesuits").setExecutor(new SpacesuitsBaseCommandExecutor(this));
     }
@@ -110,7 +256,29 @@ public class SpacesuitsPlugin extends JavaPlugin implements Listener {
      */
     @Override
     public void onDisable() {
-        // TODO: Save configuration file.
+        if (tpsMonitorTaskId != -1) {
+            getServer().getScheduler().cancelTask(tpsMonitorTaskId);
+            tpsMonitorTaskId = -1;
+        }
+        
+        if (checkSchedulerTaskId != -1) {
+            getServer().getScheduler().cancelTask(checkSchedulerTaskId);
+            checkSchedulerTaskId = -1;
+        }
+        
+        if (snapshotPublisherTaskId != -1) {
+            getServer().getScheduler().cancelTask(snapshotPublisherTaskId);
+            snapshotPublisherTaskId = -1;
+        }
+        
+        getServer().getServicesManager().unregisterAll(this);
+        
+        if (syncService != null) {
+            syncService.stop();
+        }
+        
+        // Make sure the last space world changes synced from other servers are written.
+        writeSpaceWorldConfig(spaceWorldConfigVersion, getSpaceWorldIds());
         
         // Remove all listners from the map.
         for (UUID listenerId : suitListeners.keySet()) {
@@ -132,7 +300,13 @@ public class SpacesuitsPlugin extends JavaPlugin implements Listener {
         
         // Create and start the listener.
         suitListeners.put(playerJoined.getUniqueId(), new SpacesuitListener(playerJoined, this));
-        suitListeners.get(playerJoined.getUniqueId()).run();
+        
+        // Pick up the exposure the player built up on another server:
+        if (pendingExposures.containsKey(playerJoined.getUniqueId())) {
+            suitListeners.get(playerJoined.getUniqueId()).getExposureTimer().restoreExposure(pendingExposures.remove(playerJoined.getUniqueId()));
+        }
+        
+        startListener(suitListeners.get(playerJoined.getUniqueId()));
     }
     
     /**
@@ -144,8 +318,18 @@ public class SpacesuitsPlugin extends JavaPlugin implements Listener {
     public void onPlayerQuit(PlayerQuitEvent playerQuit) {
         UUID playerQuittingId = playerQuit.getPlayer().getUniqueId();
         
+        // Player leaves while exposed:
+        if (suitListeners.get(playerQuittingId).getExposureTimer().isExposed()) {
+            suitListeners.get(playerQuittingId).callExposureEnd(SuitExposureEndEvent.Reason.QUIT);
+        }
+        
+        // Let the player's exposure follow them to another server.
+        if (syncService != null) {
+            syncService.recordExposure(playerQuittingId, suitListeners.get(playerQuittingId).getExposureTimer().getExposureNanos());
+        }
+        
         // Stop the listener's activities before removing it from the map.
-        suitListeners.get(playerQuittingId).stop();
+        stopListener(suitListeners.get(playerQuittingId));
         suitListeners.remove(playerQuittingId);
         
         getServer().broadcastMessage(playerQuit.getPlayer().getDisplayName() + " unregistered for space suit stuff.");
@@ -155,6 +339,9 @@ public class SpacesuitsPlugin extends JavaPlugin implements Listener {
      * Checks if the given world is registered as a space world, meaning that
      * players without armor can be damaged for not wearing any.
      * 
+     * Must be called from the main thread. Other threads should use the
+     * <code>SpacesuitsAPI</code> service instead.
+     * 
      * @param world World to check.
      * @return <code>true</code> if the given <code>World</code> is a valid space world.
      */
@@ -162,6 +349,76 @@ public class SpacesuitsPlugin extends JavaPlugin implements Listener {
         return spaceWorlds.get(world) != null;
     }
     
+    /**
+     * @return A read-only view of every registered space world.
+     */
+    public Set<World> getSpaceWorlds() {
+        return Collections.unmodifiableSet(spaceWorlds.keySet());
+    }
+    
+    /**
+     * @return A read-only view of the <code>SpacesuitListener</code> of every online player.
+     */
+    public Collection<SpacesuitListener> getSuitListeners() {
+        return Collections.unmodifiableCollection(suitListeners.values());
+    }
+    
+    /**
+     * @return The plugin's settings.
+     */
+    public Settings getSettings() {
+        return settings;
+    }
+    
+    /**
+     * @return The exposure and damage history recorded for players and worlds.
+     */
+    public ExposureStats getExposureStats() {
+        return exposureStats;
+    }
+    
+    /**
+     * @return How the time players spend without their suits is measured.
+     */
+    public TimingMode getTimingMode() {
+        return timingMode;
+    }
+    
+    /**
+     * @return The monitor timing every server tick. Only runs in <code>REAL_TIME</code> mode.
+     */
+    public TpsMonitor getTpsMonitor() {
+        return tpsMonitor;
+    }
+    
+    /**
+     * Gets the number of ticks each <code>SpacesuitListener</code> should wait
+     * before its next check. In <code>TICKS</code> mode this is always one tick,
+     * because exposure is measured by counting checks. In <code>REAL_TIME</code>
+     * mode it is lengthened while the server is overloaded.
+     * 
+     * @return The number of ticks between checks.
+     */
+    public long getCheckPeriod() {
+        return timingMode == TimingMode.TICKS ? 1L : tpsMonitor.getCheckPeriod();
+    }
+    
+    /**
+     * Has the given player checked in the next tick, because something which
+     * affects whether they need their suit (their armor, their world) may have
+     * changed. Only needed with the adaptive check scheduler; listeners
+     * which schedule themselves already check every tick.
+     * 
+     * @param player 
+     */
+    public void requestCheck(Player player) {
+        SpacesuitListener listener = suitListeners.get(player.getUniqueId());
+        
+        if (checkScheduler != null && listener != null) {
+            checkScheduler.requestCheck(listener);
+        }
+    }
+    
     /**
      * Sets the given world to be a space world. If the world is already a space world,
      * the world is removed from the space worlds list.
@@ -171,16 +428,96 @@ public class SpacesuitsPlugin extends JavaPlugin implements Listener {
      * @return <code>true</code> if the world is set to a space world; <code>false</code> if it is removed from the list.
      */
     public boolean toggleSpaceWorld(World world) {
-        // World is already a space world:
-        if (spaceWorlds.get(world) != null) {
-            spaceWorlds.remove(world);
-        // World is not currently a space world:
-        } else {
+        boolean spaceWorld = !isWorldSpaceWorld(world);
+        changeSpaceWorld(world, spaceWorld);
+        updateSpaceWorldConfig();
+        
+        // Tell the other servers on the network:
+        if (syncService != null) {
+            syncService.recordSpaceWorld(world.getUID(), spaceWorld);
+        }
+        
+        return spaceWorld;
+    }
+    
+    /**
+     * Applies changes synced from other servers. Space worlds are changed
+     * right away, but the configuration file is written once for the whole
+     * batch, off of the main thread.
+     * 
+     * @param changes 
+     */
+    @Override
+    public void applySyncChanges(List<SyncDelta> changes) {
+        boolean spaceWorldsChanged = false;
+        
+        for (SyncDelta change : changes) {
+            switch (change.getKind()) {
+                case SPACE_WORLD:
+                    World world = getServer().getWorld(change.getId());
+                    
+                    // Worlds not loaded on this server are ignored:
+                    if (world != null && changeSpaceWorld(world, change.getValue() != 0)) {
+                        spaceWorldsChanged = true;
+                    }
+                    
+                    break;
+                case PLAYER_EXPOSURE:
+                    restoreExposure(change.getId(), change.getValue());
+                    break;
+            }
+        }
+        
+        if (spaceWorldsChanged) {
+            updateSpaceWorldConfigAsync();
+        }
+    }
+    
+    /**
+     * Sets whether or not the given world is a space world, without saving the
+     * change to the configuration file.
+     * 
+     * @param world
+     * @param spaceWorld
+     * 
+     * @return <code>true</code> if this changed anything.
+     */
+    private boolean changeSpaceWorld(World world, boolean spaceWorld) {
+        // Nothing to change:
+        if (isWorldSpaceWorld(world) == spaceWorld) {
+            return false;
+        }
+        
+        if (spaceWorld) {
             spaceWorlds.put(world, true);
+        } else {
+            spaceWorlds.remove(world);
+        }
+        
+        // Players in the world may have only just become exposed (or safe):
+        for (Player player : world.getPlayers()) {
+            requestCheck(player);
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Applies exposure a player built up on another server. If the player is
+     * online and has built up less exposure here, theirs is replaced; if they
+     * are not online, it is kept until they join.
+     * 
+     * @param playerId
+     * @param exposureNanos 
+     */
+    private void restoreExposure(UUID playerId, long exposureNanos) {
+        SpacesuitListener listener = suitListeners.get(playerId);
+        
+        if (listener == null) {
+            pendingExposures.put(playerId, exposureNanos);
+        } else if (listener.getExposureTimer().getExposureNanos() < exposureNanos) {
+            listener.getExposureTimer().restoreExposure(exposureNanos);
         }
-
-        updateSpaceWorldConfig();
-        return spaceWorlds.get(world) != null;
     }
     
     /**
@@ -225,13 +562,157 @@ public class SpacesuitsPlugin extends JavaPlugin implements Listener {
      * @return <code>true</code> if the file was updated without failure.
      */
     private boolean updateSpaceWorldConfig() {
+        return writeSpaceWorldConfig(++spaceWorldConfigVersion, getSpaceWorldIds());
+    }
+    
+    /**
+     * Updates the configuration file with all current space world <code>UUID</code>s
+     * from an asynchronous task, so the main thread never waits on the write.
+     */
+    private void updateSpaceWorldConfigAsync() {
+        final long version = ++spaceWorldConfigVersion;
+        final List<String> worldIds = getSpaceWorldIds();
+        
+        getServer().getScheduler().runTaskAsynchronously(this, new Runnable() {
+            
+            @Override
+            public void run() {
+                // Failed to write the config:
+                if (!writeSpaceWorldConfig(version, worldIds)) {
+                    getLogger().warning("Failed to save synced space worlds to config.txt.");
+                }
+            }
+            
+        });
+    }
+    
+    /**
+     * Writes the given snapshot of space world <code>UUID</code>s to the
+     * configuration file, unless a newer snapshot has already been written.
+     * 
+     * @param version Number of the snapshot, from <code>spaceWorldConfigVersion</code>.
+     * @param worldIds
+     * 
+     * @return <code>true</code> if the file is up to date without failure.
+     */
+    private boolean writeSpaceWorldConfig(long version, List<String> worldIds) {
+        synchronized (spaceWorldConfigLock) {
+            // Snapshot is already written, or older than one which is:
+            if (version <= writtenSpaceWorldConfigVersion) {
+                return true;
+            }
+            
+            if (!Utils.writeFile(getDataFolder() + "/config.txt", worldIds)) {
+                return false;
+            }
+            
+            writtenSpaceWorldConfigVersion = version;
+            return true;
+        }
+    }
+    
+    /**
+     * @return The <code>UUID</code> of every space world, as written to the configuration file.
+     */
+    private List<String> getSpaceWorldIds() {
         List<String> worldIds = new ArrayList<>();
         
         for (World spaceWorld : spaceWorlds.keySet()) {
             worldIds.add(spaceWorld.getUID().toString());
         }
         
-        return Utils.writeFile(getDataFolder() + "/config.txt", worldIds);
+        return worldIds;
+    }
+    
+    /**
+     * Gets the number of ticks between each sync from the settings.
+     * 
+     * @return The sync period, <code>DEFAULT_SYNC_PERIOD_TICKS</code> if the setting is not a number of at least 1.
+     */
+    private long getSyncPeriodTicks() {
+        long periodTicks = settings.getLong("sync-period-ticks", -1L);
+        
+        if (periodTicks < 1) {
+            getLogger().warning("Invalid sync-period-ticks \"" + settings.getString("sync-period-ticks") + "\" in settings.txt; using " + DEFAULT_SYNC_PERIOD_TICKS + ".");
+            return DEFAULT_SYNC_PERIOD_TICKS;
+        }
+        
+        return periodTicks;
+    }
+    
+    /**
+     * Starts the given listener's checks, either through the adaptive check
+     * scheduler or by having the listener schedule itself.
+     * 
+     * @param listener 
+     */
+    private void startListener(SpacesuitListener listener) {
+        if (checkScheduler != null) {
+            checkScheduler.add(listener);
+        } else {
+            listener.run();
+        }
+    }
+    
+    /**
+     * Stops the given listener's checks.
+     * 
+     * @param listener 
+     */
+    private void stopListener(SpacesuitListener listener) {
+        if (checkScheduler != null) {
+            checkScheduler.remove(listener);
+        }
+        
+        listener.stop();
+    }
+    
+    /**
+     * Reads the settings file, then writes it back so that any settings missing
+     * from it are filled in with their defaults.
+     */
+    private void loadSettings() {
+        settings = new Settings(getDataFolder() + "/settings.txt");
+        settings.setDefault("timing-mode", TimingMode.TICKS.getSettingName());
+        settings.setDefault("check-scheduler", "fixed");
+        settings.setDefault("sync-transport", "none");
+        settings.setDefault("sync-directory", new File(getDataFolder(), "sync").getPath());
+        settings.setDefault("sync-node-id", "");
+        settings.setDefault("sync-period-ticks", String.valueOf(DEFAULT_SYNC_PERIOD_TICKS));
+        settings.load();
+        
+        timingMode = TimingMode.fromSettingName(settings.getString("timing-mode"));
+        
+        // Unknown mode; fall back to counting ticks:
+        if (timingMode == null) {
+            getLogger().warning("Unknown timing-mode \"" + settings.getString("timing-mode") + "\" in settings.txt; using " + TimingMode.TICKS.getSettingName() + ".");
+            timingMode = TimingMode.TICKS;
+        }
+        
+        String scheduler = settings.getString("check-scheduler");
+        
+        if (scheduler.equalsIgnoreCase("adaptive")) {
+            checkScheduler = new AdaptiveCheckScheduler();
+        } else if (!scheduler.equalsIgnoreCase("fixed")) {
+            getLogger().warning("Unknown check-scheduler \"" + scheduler + "\" in settings.txt; using fixed.");
+        }
+        
+        // Every server on the network needs its own id, kept across restarts:
+        if (settings.getString("sync-node-id").isEmpty()) {
+            settings.set("sync-node-id", UUID.randomUUID().toString());
+        }
+        
+        String nodeId = settings.getString("sync-node-id");
+        String transport = settings.getString("sync-transport");
+        
+        if (transport.equalsIgnoreCase("directory")) {
+            SharedDirectoryTransport directory = new SharedDirectoryTransport(new File(settings.getString("sync-directory")), nodeId);
+            syncService = new SyncService(this, directory, nodeId, new File(getDataFolder(), "sync-state.dat"), getLogger());
+        } else if (!transport.equalsIgnoreCase("none")) {
+            getLogger().warning("Unknown sync-transport \"" + transport + "\" in settings.txt; not syncing.");
+        }
+        
+        settings.save();
     }
     
     /**
@@ -24,9 +24,13 @@
 package io.github.trystancannon.spacesuits.event;
 
 import io.github.trystancannon.spacesuits.core.SpacesuitsPlugin;
+import io.github.trystancannon.spacesuits.timing.ExposureCheckable;
+import io.github.trystancannon.spacesuits.timing.ExposureTimer;
+import java.util.UUID;
 
 import org.bukkit.ChatColor;
 import org.bukkit.entity.Player;
+import org.bukkit.event.HandlerList;
 import org.bukkit.event.Listener;
 import org.bukkit.inventory.EntityEquipment;
 
@@ -36,14 +40,23 @@ import org.bukkit.inventory.EntityEquipment;
  * requires it.
  * 
  * In the case that the <code>Player</code> does not have their armor on, they will receive
- * 1/2 heart of damage every 10 seconds.
+ * 1/2 heart of damage every 10 seconds. How those 10 seconds are measured (in ticks or
+ * in real time) depends on the plugin's <code>TimingMode</code>.
  * 
  * However, a <code>Player</code> may bypass this damage with the permission node:
  * spacesuits.bypass.
  * 
+ * Other plugins are told when the player's exposure starts and ends, and when they
+ * are about to be damaged, through <code>SuitExposureStartEvent</code>,
+ * <code>SuitExposureEndEvent</code> and <code>SuitlessDamageEvent</code>. Each
+ * event is only created if something is listening for it.
+ * 
+ * When the plugin uses the <code>AdaptiveCheckScheduler</code>, the listener is not
+ * scheduled on its own; the scheduler calls <code>check</code> directly instead.
+ * 
  * @author Trystan Cannon
  */
-public final class SpacesuitListener implements Listener, Runnable {
+public final class SpacesuitListener implements Listener, Runnable, ExposureCheckable {
     
     /**
      * The number of server ticks between each time the player will receive
@@ -63,10 +76,10 @@ public final class SpacesuitListener implements Listener, Runnable {
     private final SpacesuitsPlugin plugin;
     
     /**
-     * The number of server ticks for which this listener's <code>astronaut</code>
-     * has not been wearing their armor (space suit).
+     * Measures how long this listener's <code>astronaut</code> has not been
+     * wearing their armor (space suit), and when they are due for damage.
      */
-    private long ticksWithoutSuit = 0;
+    private final ExposureTimer exposureTimer;
     
     /**
      * The task ID given to the listener when it schedules itself using the
@@ -80,6 +93,30 @@ public final class SpacesuitListener implements Listener, Runnable {
     public SpacesuitListener(Player player, SpacesuitsPlugin plugin) {
         this.astronaut = player;
         this.plugin = plugin;
+        this.exposureTimer = new ExposureTimer(plugin.getTimingMode());
+    }
+    
+    /**
+     * @return The <code>Player</code> for which this listener is listening.
+     */
+    public Player getAstronaut() {
+        return astronaut;
+    }
+    
+    /**
+     * @return The timer measuring how long the <code>astronaut</code> has been without their suit.
+     */
+    @Override
+    public ExposureTimer getExposureTimer() {
+        return exposureTimer;
+    }
+    
+    /**
+     * @return The unique id of the <code>astronaut</code>.
+     */
+    @Override
+    public UUID getCheckId() {
+        return astronaut.getUniqueId();
     }
     
     /**
@@ -102,36 +139,126 @@ public final class SpacesuitListener implements Listener, Runnable {
     
     /**
      * Runs every tick to check if the <code>astronaut</code> is wearing their
-     * armor (space suit) in world in which it is required. If they are not, the
-     * player will receive 1/2 heart of damage every <code>DAMAGE_INTERVAL</code> server ticks.
+     * armor (space suit) in world in which it is required, then reschedules
+     * itself.
+     * 
+     * In <code>REAL_TIME</code> mode, the check may run less often while the
+     * server is overloaded; damage for any intervals which passed in between
+     * is dealt together.
+     */
+    @Override
+    public void run() {
+        check(1L);
+        
+        // Reschedule the check.
+        taskId = plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, this, plugin.getCheckPeriod());
+    }
+    
+    /**
+     * Checks if the <code>astronaut</code> is wearing their armor (space suit) in
+     * world in which it is required. If they are not, the player will receive 1/2
+     * heart of damage every <code>DAMAGE_INTERVAL</code> server ticks.
      * 
      * However, the player will bypass this damage if they have the permission node:
      * spacesuits.bypass.
+     * 
+     * @param ticksSinceLastCheck Number of ticks since the previous check.
      */
     @Override
-    public void run() {
+    public void check(long ticksSinceLastCheck) {
+        long now = System.nanoTime();
+        boolean wasExposed = exposureTimer.isExposed();
+        
         // Player can be damaged for not wearing their suit and is a world in which they can be damaged for it:
         if (!astronaut.hasPermission("spacesuits.bypass") && plugin.isWorldSpaceWorld(astronaut.getWorld())) {
             EntityEquipment playerEquipment = astronaut.getEquipment();
             
             // Player isn't wearing a component of their suit:
             if (playerEquipment.getHelmet() == null || playerEquipment.getChestplate() == null || playerEquipment.getLeggings() == null || playerEquipment.getBoots() == null) {
-                ticksWithoutSuit++;
+                int damageDue = exposureTimer.checkExposed(now, ticksSinceLastCheck);
+                plugin.getExposureStats().recordExposure(astronaut, exposureTimer.getLastExposureNanos() / 1000000L);
+                
+                // Player has only now been found without their suit:
+                if (!wasExposed && hasListeners(SuitExposureStartEvent.getHandlerList())) {
+                    plugin.getServer().getPluginManager().callEvent(new SuitExposureStartEvent(astronaut, astronaut.getWorld()));
+                }
                     
                 // Player has been without the suit long enough to sustain damage:
-                if (ticksWithoutSuit % DAMAGE_INTERVAL == 0) {
-                    // Damage the player.
-                    SpacesuitsPlugin.sendLabeledMessage(astronaut, ChatColor.ITALIC.toString() + ChatColor.RED + "You are without your space suit! Be careful!");
-                    astronaut.damage(0.5);
+                if (damageDue > 0) {
+                    damage(damageDue);
                 }
             // Player is wearing their suit:
             } else {
-                ticksWithoutSuit = 0;
+                exposureTimer.checkSuited(now);
+                
+                if (wasExposed) {
+                    callExposureEnd(SuitExposureEndEvent.Reason.SUIT_EQUIPPED);
+                }
+            }
+        // Player can't currently be damaged; keep their exposure so far:
+        } else {
+            exposureTimer.checkPaused(now, ticksSinceLastCheck);
+            
+            if (wasExposed) {
+                callExposureEnd(SuitExposureEndEvent.Reason.SUIT_NOT_REQUIRED);
+            }
+        }
+    }
+    
+    /**
+     * Tells other plugins that the <code>astronaut</code>'s exposure has ended
+     * by calling a <code>SuitExposureEndEvent</code>, if anything is listening
+     * for one.
+     * 
+     * @param reason 
+     */
+    public void callExposureEnd(SuitExposureEndEvent.Reason reason) {
+        if (hasListeners(SuitExposureEndEvent.getHandlerList())) {
+            plugin.getServer().getPluginManager().callEvent(new SuitExposureEndEvent(astronaut, reason));
+        }
+    }
+    
+    /**
+     * Damages the <code>astronaut</code> for the given number of damage intervals
+     * spent without their suit, unless a <code>SuitlessDamageEvent</code> is cancelled.
+     * 
+     * Intervals being caught up on are dealt as one hit, because repeated hits
+     * in the same tick would be absorbed by the player's damage immunity.
+     * 
+     * @param intervals 
+     */
+    private void damage(int intervals) {
+        double damage = 0.5 * intervals;
+        
+        // Let other plugins cancel or change the damage:
+        if (hasListeners(SuitlessDamageEvent.getHandlerList())) {
+            SuitlessDamageEvent damageEvent = new SuitlessDamageEvent(astronaut, damage, intervals);
+            plugin.getServer().getPluginManager().callEvent(damageEvent);
+            
+            if (damageEvent.isCancelled()) {
+                return;
             }
+            
+            damage = damageEvent.getDamage();
         }
         
-        // Reschedule the check.
-        taskId = plugin.getServer().getScheduler().scheduleSyncDelayedTask(plugin, this, 1L);
+        SpacesuitsPlugin.sendLabeledMessage(astronaut, ChatColor.ITALIC.toString() + ChatColor.RED + "You are without your space suit! Be careful!");
+        astronaut.damage(damage);
+        
+        for (int hit = 0; hit < intervals; hit++) {
+            plugin.getExposureStats().recordDamage(astronaut);
+        }
+    }
+    
+    /**
+     * Checks if anything is listening for an event, so that events nobody is
+     * listening for are never created or called.
+     * 
+     * @param handlers The event's <code>HandlerList</code>.
+     * @return <code>true</code> if at least one listener is registered.
+     */
+    private static boolean hasListeners(HandlerList handlers) {
+        return handlers.getRegisteredListeners().length > 0;
     }
     
 }
@@ -0,0 +1,114 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.event;
+
+import io.github.trystancannon.spacesuits.core.SpacesuitsPlugin;
+import org.bukkit.entity.HumanEntity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.entity.PlayerDeathEvent;
+import org.bukkit.event.inventory.InventoryClickEvent;
+import org.bukkit.event.inventory.InventoryCloseEvent;
+import org.bukkit.event.inventory.InventoryDragEvent;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerItemBreakEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+
+/**
+ * A <code>SuitChangeListener</code> listens for anything which might change
+ * whether a player is wearing their space suit or is in a space world, and asks
+ * the plugin to check that player in the next tick.
+ * 
+ * Only registered when the plugin uses the <code>AdaptiveCheckScheduler</code>,
+ * which otherwise might not check the player for a while.
+ * 
+ * @author Trystan Cannon
+ */
+public final class SuitChangeListener implements Listener {
+    
+    /**
+     * The plugin with which checks are requested.
+     */
+    private final SpacesuitsPlugin plugin;
+    
+    public SuitChangeListener(SpacesuitsPlugin plugin) {
+        this.plugin = plugin;
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryClick(InventoryClickEvent inventoryClick) {
+        requestCheck(inventoryClick.getWhoClicked());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onInventoryDrag(InventoryDragEvent inventoryDrag) {
+        requestCheck(inventoryDrag.getWhoClicked());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInventoryClose(InventoryCloseEvent inventoryClose) {
+        requestCheck(inventoryClose.getPlayer());
+    }
+    
+    /**
+     * Right clicking with armor in hand puts it on. Interactions with the air
+     * arrive already cancelled, so cancelled events are not ignored here.
+     * 
+     * @param interact 
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerInteract(PlayerInteractEvent interact) {
+        requestCheck(interact.getPlayer());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerItemBreak(PlayerItemBreakEvent itemBreak) {
+        requestCheck(itemBreak.getPlayer());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent changedWorld) {
+        requestCheck(changedWorld.getPlayer());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerDeath(PlayerDeathEvent death) {
+        requestCheck(death.getEntity());
+    }
+    
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent respawn) {
+        requestCheck(respawn.getPlayer());
+    }
+    
+    private void requestCheck(HumanEntity entity) {
+        if (entity instanceof Player) {
+            plugin.requestCheck((Player) entity);
+        }
+    }
+    
+}
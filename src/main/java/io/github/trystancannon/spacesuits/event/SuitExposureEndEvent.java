@@ -0,0 +1,91 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.event;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.player.PlayerEvent;
+
+/**
+ * Called when a player who was exposed is no longer exposed, either because
+ * they put their space suit back on, because they can no longer be damaged
+ * where they are, or because they left the server. Called once per exposure,
+ * not every tick.
+ * 
+ * @author Trystan Cannon
+ */
+public class SuitExposureEndEvent extends PlayerEvent {
+    
+    /**
+     * Why an exposure ended.
+     */
+    public enum Reason {
+        
+        /**
+         * The player put their whole space suit back on.
+         */
+        SUIT_EQUIPPED,
+        
+        /**
+         * The player is no longer required to wear their suit: they left the
+         * space world, it stopped being one, or they gained spacesuits.bypass.
+         */
+        SUIT_NOT_REQUIRED,
+        
+        /**
+         * The player left the server.
+         */
+        QUIT
+        
+    }
+    
+    private static final HandlerList handlers = new HandlerList();
+    
+    /**
+     * Why the exposure ended.
+     */
+    private final Reason reason;
+    
+    public SuitExposureEndEvent(Player player, Reason reason) {
+        super(player);
+        this.reason = reason;
+    }
+    
+    /**
+     * @return Why the exposure ended.
+     */
+    public Reason getReason() {
+        return reason;
+    }
+    
+    @Override
+    public HandlerList getHandlers() {
+        return handlers;
+    }
+    
+    public static HandlerList getHandlerList() {
+        return handlers;
+    }
+    
+}
@@ -0,0 +1,101 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.event;
+
+import org.bukkit.entity.Player;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.HandlerList;
+import org.bukkit.event.player.PlayerEvent;
+
+/**
+ * Called when a player is about to be damaged for being without their space
+ * suit. Cancelling the event spares the player (and their warning message);
+ * the damage dealt can also be changed.
+ * 
+ * @author Trystan Cannon
+ */
+public class SuitlessDamageEvent extends PlayerEvent implements Cancellable {
+    
+    private static final HandlerList handlers = new HandlerList();
+    
+    /**
+     * The number of damage intervals this damage is for. More than one when
+     * several intervals are being caught up on at once.
+     */
+    private final int intervals;
+    
+    /**
+     * The damage which will be dealt.
+     */
+    private double damage;
+    
+    private boolean cancelled = false;
+    
+    public SuitlessDamageEvent(Player player, double damage, int intervals) {
+        super(player);
+        this.damage = damage;
+        this.intervals = intervals;
+    }
+    
+    /**
+     * @return The number of damage intervals this damage is for, usually 1.
+     */
+    public int getIntervals() {
+        return intervals;
+    }
+    
+    /**
+     * @return The damage which will be dealt.
+     */
+    public double getDamage() {
+        return damage;
+    }
+    
+    /**
+     * @param damage The damage to deal instead.
+     */
+    public void setDamage(double damage) {
+        this.damage = damage;
+    }
+    
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+    
+    @Override
+    public void setCancelled(boolean cancelled) {
+        this.cancelled = cancelled;
+    }
+    
+    @Override
+    public HandlerList getHandlers() {
+        return handlers;
+    }
+    
+    public static HandlerList getHandlerList() {
+        return handlers;
+    }
+    
+}
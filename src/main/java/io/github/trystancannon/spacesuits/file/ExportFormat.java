@@ -0,0 +1,186 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.file;
+
+/**
+ * The file formats which the plugin's state can be exported to. Each
+ * <code>ExportRecord</code> is written as one line, after the header line
+ * (if the format has one) describing the first record of its type.
+ * 
+ * @author Trystan Cannon
+ */
+public enum ExportFormat {
+    
+    /**
+     * Comma separated values. Each line starts with the record type followed by
+     * the record's field values, so lines of different types have different
+     * numbers of columns. The first line of each type is preceded by a header
+     * line naming its columns, such as #player,id,name,world,exposed,exposure_ms.
+     */
+    CSV("csv") {
+        
+        @Override
+        public String format(ExportRecord record) {
+            StringBuilder line = new StringBuilder(escapeCsv(record.getType()));
+            
+            for (int field = 0; field < record.getFieldCount(); field++) {
+                line.append(',').append(escapeCsv(String.valueOf(record.getFieldValue(field))));
+            }
+            
+            return line.append('\n').toString();
+        }
+        
+        @Override
+        public String formatHeader(ExportRecord record) {
+            StringBuilder line = new StringBuilder("#").append(escapeCsv(record.getType()));
+            
+            for (int field = 0; field < record.getFieldCount(); field++) {
+                line.append(',').append(escapeCsv(record.getFieldName(field)));
+            }
+            
+            return line.append('\n').toString();
+        }
+        
+    },
+    
+    /**
+     * JSON Lines. Each line is a JSON object with a "type" key followed by a key
+     * for each of the record's fields, so no header is needed.
+     */
+    JSON_LINES("jsonl") {
+        
+        @Override
+        public String format(ExportRecord record) {
+            StringBuilder line = new StringBuilder("{\"type\":").append(quoteJson(record.getType()));
+            
+            for (int field = 0; field < record.getFieldCount(); field++) {
+                Object value = record.getFieldValue(field);
+                
+                line.append(',').append(quoteJson(record.getFieldName(field))).append(':');
+                line.append(value instanceof Number || value instanceof Boolean ? value.toString() : quoteJson(String.valueOf(value)));
+            }
+            
+            return line.append("}\n").toString();
+        }
+        
+    };
+    
+    /**
+     * The name of the format as typed in /spacesuits export, and the file extension.
+     */
+    private final String extension;
+    
+    private ExportFormat(String extension) {
+        this.extension = extension;
+    }
+    
+    /**
+     * @return The name of the format, also used as the file extension.
+     */
+    public String getExtension() {
+        return extension;
+    }
+    
+    /**
+     * Formats the given record as a single line, including the line break.
+     * 
+     * @param record
+     * @return The formatted line.
+     */
+    public abstract String format(ExportRecord record);
+    
+    /**
+     * Formats the header line describing the fields of records of the same
+     * type as the given one, including the line break.
+     * 
+     * @param record
+     * @return The header line, empty if the format has no headers.
+     */
+    public String formatHeader(ExportRecord record) {
+        return "";
+    }
+    
+    /**
+     * @param extension
+     * @return The format with the given name, <code>null</code> if there is none.
+     */
+    public static ExportFormat fromExtension(String extension) {
+        for (ExportFormat format : values()) {
+            if (format.extension.equalsIgnoreCase(extension)) {
+                return format;
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * Quotes the given CSV value if it contains a comma, quote or line break.
+     */
+    private static String escapeCsv(String value) {
+        if (value.indexOf(',') == -1 && value.indexOf('"') == -1 && value.indexOf('\n') == -1 && value.indexOf('\r') == -1) {
+            return value;
+        }
+        
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+    
+    /**
+     * Quotes the given value as a JSON string.
+     */
+    private static String quoteJson(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        
+        for (int index = 0; index < value.length(); index++) {
+            char character = value.charAt(index);
+            
+            switch (character) {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if (character < 0x20) {
+                        quoted.append(String.format("\\u%04x", (int) character));
+                    } else {
+                        quoted.append(character);
+                    }
+            }
+        }
+        
+        return quoted.append('"').toString();
+    }
+    
+}
@@ -0,0 +1,90 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.file;
+
+/**
+ * A single immutable row of an export: a record type followed by named fields.
+ * Field values should be <code>String</code>s, <code>Number</code>s or
+ * <code>Boolean</code>s.
+ * 
+ * @author Trystan Cannon
+ */
+public final class ExportRecord {
+    
+    /**
+     * What the record describes (world, setting, player, etc.).
+     */
+    private final String type;
+    
+    /**
+     * The name of each field.
+     */
+    private final String[] fieldNames;
+    
+    /**
+     * The value of the field with the same index in <code>fieldNames</code>.
+     */
+    private final Object[] fieldValues;
+    
+    public ExportRecord(String type, String[] fieldNames, Object... fieldValues) {
+        if (fieldNames.length != fieldValues.length) {
+            throw new IllegalArgumentException("Expected " + fieldNames.length + " field values but got " + fieldValues.length + ".");
+        }
+        
+        this.type = type;
+        this.fieldNames = fieldNames;
+        this.fieldValues = fieldValues.clone();
+    }
+    
+    /**
+     * @return What the record describes.
+     */
+    public String getType() {
+        return type;
+    }
+    
+    /**
+     * @return The number of fields in the record.
+     */
+    public int getFieldCount() {
+        return fieldNames.length;
+    }
+    
+    /**
+     * @param index
+     * @return The name of the field at the given index.
+     */
+    public String getFieldName(int index) {
+        return fieldNames[index];
+    }
+    
+    /**
+     * @param index
+     * @return The value of the field at the given index.
+     */
+    public Object getFieldValue(int index) {
+        return fieldValues[index];
+    }
+    
+}
@@ -0,0 +1,183 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.file;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A simple settings file made up of "key: value" lines. Blank lines and lines
+ * starting with # are ignored.
+ * 
+ * Every setting has a default value, which is used if the setting is missing
+ * from the file. Saving the settings writes every setting, defaults included,
+ * so that the file always lists everything which can be changed. Comments and
+ * blank lines read from the file are written back above the setting they came
+ * before, so anything an admin notes in the file is kept.
+ * 
+ * @author Trystan Cannon
+ */
+public final class Settings {
+    
+    /**
+     * Path to the settings file.
+     */
+    private final String filePath;
+    
+    /**
+     * The current value of every setting, in the order they were defined.
+     */
+    private final LinkedHashMap<String, String> values = new LinkedHashMap<>();
+    
+    /**
+     * The comment and blank lines read from just above each setting in the file.
+     */
+    private final Map<String, List<String>> comments = new HashMap<>();
+    
+    /**
+     * The comment and blank lines read from after the last setting in the file.
+     */
+    private final List<String> trailingComments = new ArrayList<>();
+    
+    public Settings(String filePath) {
+        this.filePath = filePath;
+    }
+    
+    /**
+     * Defines a setting with the given default value. Should be called for
+     * every setting before <code>load</code>.
+     * 
+     * @param key
+     * @param defaultValue 
+     */
+    public void setDefault(String key, String defaultValue) {
+        values.put(key, defaultValue);
+    }
+    
+    /**
+     * Changes the value of a setting. Not written to the file until <code>save</code>.
+     * 
+     * @param key
+     * @param value 
+     */
+    public void set(String key, String value) {
+        values.put(key, value);
+    }
+    
+    /**
+     * @param key
+     * @return The current value of the setting, <code>null</code> if it was never defined.
+     */
+    public String getString(String key) {
+        return values.get(key);
+    }
+    
+    /**
+     * @return Every setting and its current value, in the order they were defined.
+     */
+    public Map<String, String> getValues() {
+        return Collections.unmodifiableMap(values);
+    }
+    
+    /**
+     * @param key
+     * @param defaultValue Returned if the value is missing or not a number.
+     * 
+     * @return The current value of the setting as a number.
+     */
+    public long getLong(String key, long defaultValue) {
+        try {
+            return Long.parseLong(values.get(key));
+        } catch (NumberFormatException failure) {
+            return defaultValue;
+        }
+    }
+    
+    /**
+     * Reads the settings file, replacing the default value of every setting
+     * found in it and remembering its comments.
+     * 
+     * @return <code>true</code> if the file was read without failure.
+     */
+    public boolean load() {
+        List<String> lines = Utils.getFileContents(filePath);
+        
+        // Failed to read the file:
+        if (lines == null) {
+            return false;
+        }
+        
+        comments.clear();
+        trailingComments.clear();
+        
+        List<String> pendingComments = new ArrayList<>();
+        
+        for (String line : lines) {
+            int separator = line.indexOf(':');
+            
+            // Keep comments and anything that isn't a setting for the next setting:
+            if (line.trim().startsWith("#") || separator == -1) {
+                pendingComments.add(line);
+                continue;
+            }
+            
+            String key = line.substring(0, separator).trim();
+            values.put(key, line.substring(separator + 1).trim());
+            
+            if (!pendingComments.isEmpty()) {
+                comments.put(key, pendingComments);
+                pendingComments = new ArrayList<>();
+            }
+        }
+        
+        trailingComments.addAll(pendingComments);
+        return true;
+    }
+    
+    /**
+     * Writes every setting to the settings file, along with the comments read
+     * from it.
+     * 
+     * @return <code>true</code> if the file was written without failure.
+     */
+    public boolean save() {
+        List<String> lines = new ArrayList<>();
+        
+        for (Map.Entry<String, String> setting : values.entrySet()) {
+            if (comments.containsKey(setting.getKey())) {
+                lines.addAll(comments.get(setting.getKey()));
+            }
+            
+            lines.add(setting.getKey() + ": " + setting.getValue());
+        }
+        
+        lines.addAll(trailingComments);
+        return Utils.writeFile(filePath, lines);
+    }
+    
+}
@@ -0,0 +1,250 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.file;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.CRC32;
+
+/**
+ * A <code>StateExporter</code> is a <code>Runnable</code> which writes a
+ * snapshot of the plugin's state to a file, one <code>ExportRecord</code> per
+ * line. It is meant to be run off of the main server thread.
+ * 
+ * Lines are encoded one at a time into a single fixed-size buffer which is
+ * written through a <code>FileChannel</code> whenever it fills, so the memory
+ * used for writing stays the same however many records there are. The file is
+ * first written under a temporary name and only moved into place once it is
+ * complete, so a partially written export is never left behind under the
+ * final name. If the export fails for any reason, the temporary file is
+ * deleted and the <code>ProgressListener</code> is always told.
+ * 
+ * @author Trystan Cannon
+ */
+public final class StateExporter implements Runnable {
+    
+    /**
+     * The size, in bytes, of the buffer lines are encoded into before being
+     * written to the file.
+     */
+    public static final int BUFFER_SIZE = 64 * 1024;
+    
+    /**
+     * The number of records written between each progress report.
+     */
+    public static final int PROGRESS_INTERVAL = 10000;
+    
+    /**
+     * Receives the progress of an export. Called from the thread running the
+     * export, NOT the main server thread.
+     */
+    public interface ProgressListener {
+        
+        /**
+         * Called every <code>PROGRESS_INTERVAL</code> records.
+         * 
+         * @param recordsWritten
+         * @param totalRecords 
+         */
+        void onProgress(int recordsWritten, int totalRecords);
+        
+        /**
+         * Called once the export has been written and moved into place.
+         * 
+         * @param file The exported file.
+         * @param records Number of records written.
+         * @param bytes Size of the file.
+         * @param checksum CRC-32 of the file's contents.
+         */
+        void onComplete(File file, int records, long bytes, long checksum);
+        
+        /**
+         * Called if the export could not be written, whatever the reason.
+         * 
+         * @param failure 
+         */
+        void onFailure(Throwable failure);
+        
+    }
+    
+    /**
+     * The file to export to.
+     */
+    private final File file;
+    
+    /**
+     * The format each record is written in.
+     */
+    private final ExportFormat format;
+    
+    /**
+     * The snapshot to export. Must not be changed while the export runs.
+     */
+    private final List<ExportRecord> records;
+    
+    /**
+     * Receives the progress of the export.
+     */
+    private final ProgressListener progressListener;
+    
+    public StateExporter(File file, ExportFormat format, List<ExportRecord> records, ProgressListener progressListener) {
+        this.file = file;
+        this.format = format;
+        this.records = records;
+        this.progressListener = progressListener;
+    }
+    
+    /**
+     * Writes every record to the export file, reporting progress along the way.
+     */
+    @Override
+    public void run() {
+        Path finalPath = file.toPath();
+        Path tempPath = finalPath.resolveSibling(file.getName() + ".tmp");
+        
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        CRC32 checksum = new CRC32();
+        long bytes = 0;
+        int recordsWritten = 0;
+        Throwable failure = null;
+        
+        try {
+            try (FileChannel channel = FileChannel.open(tempPath, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                Set<String> describedTypes = new HashSet<>();
+                
+                for (ExportRecord record : records) {
+                    // Describe the fields before the first record of each type:
+                    if (describedTypes.add(record.getType())) {
+                        bytes += writeLine(channel, buffer, checksum, format.formatHeader(record));
+                    }
+                    
+                    bytes += writeLine(channel, buffer, checksum, format.format(record));
+                    recordsWritten++;
+                    
+                    if (recordsWritten % PROGRESS_INTERVAL == 0) {
+                        progressListener.onProgress(recordsWritten, records.size());
+                    }
+                }
+                
+                flush(channel, buffer);
+                channel.force(true);
+            }
+            
+            Files.move(tempPath, finalPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException | RuntimeException thrown) {
+            failure = thrown;
+        } catch (Error thrown) {
+            failure = thrown;
+            throw thrown;
+        } finally {
+            // Export didn't make it into place; don't leave the partial file behind:
+            if (failure != null) {
+                deleteQuietly(tempPath);
+                progressListener.onFailure(failure);
+            }
+        }
+        
+        if (failure != null) {
+            return;
+        }
+        
+        progressListener.onComplete(file, recordsWritten, bytes, checksum.getValue());
+    }
+    
+    /**
+     * Deletes the file at the given path if it exists, ignoring any failure.
+     * 
+     * @param path 
+     */
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException failure) {}
+    }
+    
+    /**
+     * Encodes the given line into the buffer, flushing the buffer to the channel
+     * first if the line doesn't fit, and adds it to the checksum.
+     * 
+     * @param channel
+     * @param buffer
+     * @param checksum
+     * @param text Line to write, including the line break. Nothing is written if empty.
+     * 
+     * @return The number of bytes in the line.
+     * 
+     * @throws IOException 
+     */
+    private static int writeLine(FileChannel channel, ByteBuffer buffer, CRC32 checksum, String text) throws IOException {
+        byte[] line = text.getBytes(StandardCharsets.UTF_8);
+        checksum.update(line, 0, line.length);
+        
+        // Line won't fit in what's left of the buffer:
+        if (line.length > buffer.remaining()) {
+            flush(channel, buffer);
+        }
+        
+        // Line is bigger than the whole buffer; write it on its own:
+        if (line.length > buffer.capacity()) {
+            ByteBuffer wrapped = ByteBuffer.wrap(line);
+            
+            while (wrapped.hasRemaining()) {
+                channel.write(wrapped);
+            }
+        } else {
+            buffer.put(line);
+        }
+        
+        return line.length;
+    }
+    
+    /**
+     * Writes everything in the buffer to the channel and clears the buffer.
+     * 
+     * @param channel
+     * @param buffer
+     * 
+     * @throws IOException 
+     */
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        
+        buffer.clear();
+    }
+    
+}
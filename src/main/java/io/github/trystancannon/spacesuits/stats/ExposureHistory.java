@@ -0,0 +1,163 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.stats;
+
+/**
+ * The exposure and damage history of a single player or world.
+ * 
+ * History is rolled up into a ring of minute buckets covering the last hour and
+ * a ring of hour buckets covering the last day. The times of the most recent
+ * damage events are kept in their own small ring. Every ring is a fixed size,
+ * so a history takes the same amount of memory for its whole life.
+ * 
+ * @author Trystan Cannon
+ */
+public final class ExposureHistory {
+    
+    /**
+     * The number of most recent damage events whose times are remembered.
+     */
+    public static final int RECENT_DAMAGE_EVENTS = 16;
+    
+    /**
+     * The last known name of the player or world this history belongs to.
+     */
+    private final String name;
+    
+    /**
+     * One bucket per minute, covering the last hour.
+     */
+    private final TimeBucketRing minutes = new TimeBucketRing(60, 60L * 1000L);
+    
+    /**
+     * One bucket per hour, covering the last day.
+     */
+    private final TimeBucketRing hours = new TimeBucketRing(24, 60L * 60L * 1000L);
+    
+    /**
+     * Wall clock times of the most recent damage events. <code>recentDamageCount</code>
+     * is the total number ever written, so the newest is at
+     * <code>(recentDamageCount - 1) % RECENT_DAMAGE_EVENTS</code>.
+     */
+    private final long[] recentDamageTimes = new long[RECENT_DAMAGE_EVENTS];
+    
+    /**
+     * The total number of damage events written to <code>recentDamageTimes</code>.
+     */
+    private int recentDamageCount = 0;
+    
+    /**
+     * Total milliseconds of exposure since this history was created.
+     */
+    private long totalExposureMillis;
+    
+    /**
+     * Total damage events since this history was created.
+     */
+    private long totalDamage;
+    
+    public ExposureHistory(String name, long totalExposureMillis, long totalDamage) {
+        this.name = name;
+        this.totalExposureMillis = totalExposureMillis;
+        this.totalDamage = totalDamage;
+    }
+    
+    /**
+     * @return The last known name of the player or world.
+     */
+    public String getName() {
+        return name;
+    }
+    
+    /**
+     * @return The ring of minute buckets covering the last hour.
+     */
+    public TimeBucketRing getMinutes() {
+        return minutes;
+    }
+    
+    /**
+     * @return The ring of hour buckets covering the last day.
+     */
+    public TimeBucketRing getHours() {
+        return hours;
+    }
+    
+    /**
+     * @return Total milliseconds of exposure since this history was created.
+     */
+    public long getTotalExposureMillis() {
+        return totalExposureMillis;
+    }
+    
+    /**
+     * @return Total damage events since this history was created.
+     */
+    public long getTotalDamage() {
+        return totalDamage;
+    }
+    
+    /**
+     * Records the given milliseconds of exposure.
+     * 
+     * @param nowMillis Current wall clock time.
+     * @param exposure
+     */
+    public void recordExposure(long nowMillis, long exposure) {
+        minutes.add(nowMillis, exposure, 0);
+        hours.add(nowMillis, exposure, 0);
+        totalExposureMillis += exposure;
+    }
+    
+    /**
+     * Records a single damage event.
+     * 
+     * @param nowMillis Current wall clock time.
+     */
+    public void recordDamage(long nowMillis) {
+        minutes.add(nowMillis, 0, 1);
+        hours.add(nowMillis, 0, 1);
+        totalDamage++;
+        
+        recentDamageTimes[recentDamageCount % RECENT_DAMAGE_EVENTS] = nowMillis;
+        recentDamageCount++;
+    }
+    
+    /**
+     * Gets the times of the most recent damage events, newest first.
+     * 
+     * @return At most <code>RECENT_DAMAGE_EVENTS</code> wall clock times.
+     */
+    public long[] getRecentDamageTimes() {
+        int count = Math.min(recentDamageCount, RECENT_DAMAGE_EVENTS);
+        long[] times = new long[count];
+        
+        for (int index = 0; index < count; index++) {
+            times[index] = recentDamageTimes[(recentDamageCount - 1 - index) % RECENT_DAMAGE_EVENTS];
+        }
+        
+        return times;
+    }
+    
+}
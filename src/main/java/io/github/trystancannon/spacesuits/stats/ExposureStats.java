@@ -0,0 +1,226 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.stats;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+
+/**
+ * Records how long players spend exposed (without their space suits in a space
+ * world) and how often they are damaged for it, both per player and per world.
+ * 
+ * The memory used is hard-bounded: each history is a fixed size, at most
+ * <code>MAX_TRACKED_PLAYERS</code> player histories and <code>MAX_TRACKED_WORLDS</code>
+ * world histories are kept (the least recently updated are dropped first), and
+ * the top exposed players are kept in a heap of <code>TOP_SIZE</code> entries.
+ * 
+ * All methods must be called from the main server thread.
+ * 
+ * @author Trystan Cannon
+ */
+public final class ExposureStats {
+    
+    /**
+     * The maximum number of players whose histories are kept at once.
+     */
+    public static final int MAX_TRACKED_PLAYERS = 512;
+    
+    /**
+     * The maximum number of worlds whose histories are kept at once.
+     */
+    public static final int MAX_TRACKED_WORLDS = 64;
+    
+    /**
+     * The number of players listed by /spacesuits top.
+     */
+    public static final int TOP_SIZE = 10;
+    
+    /**
+     * Player histories keyed by the player's UUID, in least recently updated order.
+     */
+    private final Map<UUID, ExposureHistory> playerHistories = new BoundedHistoryMap(MAX_TRACKED_PLAYERS);
+    
+    /**
+     * World histories keyed by the world's UUID, in least recently updated order.
+     */
+    private final Map<UUID, ExposureHistory> worldHistories = new BoundedHistoryMap(MAX_TRACKED_WORLDS);
+    
+    /**
+     * The players with the most total time spent exposed.
+     */
+    private final TopExposureHeap topPlayers = new TopExposureHeap(TOP_SIZE);
+    
+    /**
+     * Records that the given player has spent the given time exposed in
+     * their current world.
+     * 
+     * @param player
+     * @param exposureMillis
+     */
+    public void recordExposure(Player player, long exposureMillis) {
+        long now = System.currentTimeMillis();
+        ExposureHistory playerHistory = getOrCreatePlayerHistory(player);
+        
+        playerHistory.recordExposure(now, exposureMillis);
+        getOrCreateWorldHistory(player.getWorld()).recordExposure(now, exposureMillis);
+        topPlayers.offer(player.getUniqueId(), playerHistory.getName(), playerHistory.getTotalExposureMillis());
+    }
+    
+    /**
+     * Records that the given player has been damaged for being without their
+     * space suit in their current world.
+     * 
+     * @param player
+     */
+    public void recordDamage(Player player) {
+        long now = System.currentTimeMillis();
+        
+        getOrCreatePlayerHistory(player).recordDamage(now);
+        getOrCreateWorldHistory(player.getWorld()).recordDamage(now);
+    }
+    
+    /**
+     * Finds the history of the player with the given name. Only players whose
+     * histories are still tracked can be found.
+     * 
+     * @param playerName Name of the player, ignoring case.
+     * @return The player's history, <code>null</code> if none is tracked.
+     */
+    public ExposureHistory findPlayerHistory(String playerName) {
+        for (ExposureHistory history : playerHistories.values()) {
+            if (history.getName().equalsIgnoreCase(playerName)) {
+                return history;
+            }
+        }
+        
+        return null;
+    }
+    
+    /**
+     * @return The UUIDs of the most exposed players, most exposed first.
+     */
+    public List<UUID> getTopPlayers() {
+        return topPlayers.getTop();
+    }
+    
+    /**
+     * @param playerId
+     * @return The last known name of a player in the top list, <code>null</code> if they are not in it.
+     */
+    public String getTopPlayerName(UUID playerId) {
+        return topPlayers.getName(playerId);
+    }
+    
+    /**
+     * @param playerId
+     * @return The total exposure of a player in the top list, -1 if they are not in it.
+     */
+    public long getTopPlayerExposure(UUID playerId) {
+        return topPlayers.getScore(playerId);
+    }
+    
+    /**
+     * @return All tracked player histories keyed by UUID, least recently updated first.
+     */
+    public Map<UUID, ExposureHistory> getPlayerHistories() {
+        return Collections.unmodifiableMap(playerHistories);
+    }
+    
+    /**
+     * @return All tracked world histories, least recently updated first.
+     */
+    public Iterable<ExposureHistory> getWorldHistories() {
+        return worldHistories.values();
+    }
+    
+    /**
+     * Formats the given duration as hours, minutes and seconds, leaving out
+     * leading units which are zero. For example: 1h 2m 3s, 4m 0s, 5s.
+     * 
+     * @param millis
+     * @return The formatted duration.
+     */
+    public static String formatDuration(long millis) {
+        long seconds = millis / 1000L;
+        
+        if (seconds >= 3600L) {
+            return (seconds / 3600L) + "h " + (seconds % 3600L / 60L) + "m " + (seconds % 60L) + "s";
+        } else if (seconds >= 60L) {
+            return (seconds / 60L) + "m " + (seconds % 60L) + "s";
+        }
+        
+        return seconds + "s";
+    }
+    
+    private ExposureHistory getOrCreatePlayerHistory(Player player) {
+        ExposureHistory history = playerHistories.get(player.getUniqueId());
+        
+        // Not tracked (or dropped since); carry over the total if they are still in the top list:
+        if (history == null) {
+            long totalExposure = Math.max(topPlayers.getScore(player.getUniqueId()), 0);
+            
+            history = new ExposureHistory(player.getName(), totalExposure, 0);
+            playerHistories.put(player.getUniqueId(), history);
+        }
+        
+        return history;
+    }
+    
+    private ExposureHistory getOrCreateWorldHistory(World world) {
+        ExposureHistory history = worldHistories.get(world.getUID());
+        
+        if (history == null) {
+            history = new ExposureHistory(world.getName(), 0, 0);
+            worldHistories.put(world.getUID(), history);
+        }
+        
+        return history;
+    }
+    
+    /**
+     * A <code>LinkedHashMap</code> in access order which drops its least
+     * recently used entry once it holds more than <code>capacity</code> entries.
+     */
+    private static final class BoundedHistoryMap extends LinkedHashMap<UUID, ExposureHistory> {
+        
+        private final int capacity;
+        
+        public BoundedHistoryMap(int capacity) {
+            super(capacity * 4 / 3 + 1, 0.75f, true);
+            this.capacity = capacity;
+        }
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, ExposureHistory> eldest) {
+            return size() > capacity;
+        }
+        
+    }
+    
+}
@@ -0,0 +1,202 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.stats;
+
+/**
+ * A <code>TimeBucketRing</code> is a fixed-size ring of time buckets, each of
+ * which rolls up the exposure time and damage taken during one span of wall
+ * clock time (a minute, an hour, etc.).
+ * 
+ * Buckets are stored in primitive arrays and are reused as time moves on, so
+ * the memory used by a ring never grows no matter how long the server runs.
+ * A bucket which belongs to a span of time that has already fallen out of the
+ * ring is simply cleared and reused for the current span.
+ * 
+ * @author Trystan Cannon
+ */
+public final class TimeBucketRing {
+    
+    /**
+     * The length of time, in milliseconds, covered by each bucket.
+     */
+    private final long bucketMillis;
+    
+    /**
+     * The absolute bucket number (time / <code>bucketMillis</code>) that each
+     * slot currently holds. -1 if the slot has never been used.
+     */
+    private final long[] bucketKeys;
+    
+    /**
+     * The milliseconds of exposure recorded in each slot.
+     */
+    private final long[] exposureMillis;
+    
+    /**
+     * The number of damage events recorded in each slot.
+     */
+    private final int[] damageCounts;
+    
+    public TimeBucketRing(int slots, long bucketMillis) {
+        this.bucketMillis = bucketMillis;
+        this.bucketKeys = new long[slots];
+        this.exposureMillis = new long[slots];
+        this.damageCounts = new int[slots];
+        
+        for (int slot = 0; slot < slots; slot++) {
+            bucketKeys[slot] = -1;
+        }
+    }
+    
+    /**
+     * @return The number of buckets in the ring.
+     */
+    public int getSlots() {
+        return bucketKeys.length;
+    }
+    
+    /**
+     * @return The length of time, in milliseconds, covered by each bucket.
+     */
+    public long getBucketMillis() {
+        return bucketMillis;
+    }
+    
+    /**
+     * Adds the given exposure time and damage count to the bucket covering
+     * the given time.
+     * 
+     * @param nowMillis Current wall clock time.
+     * @param exposure Milliseconds of exposure to add.
+     * @param damage Number of damage events to add.
+     */
+    public void add(long nowMillis, long exposure, int damage) {
+        int slot = claimSlot(nowMillis / bucketMillis);
+        
+        exposureMillis[slot] += exposure;
+        damageCounts[slot] += damage;
+    }
+    
+    /**
+     * Gets the exposure recorded in the bucket the given number of buckets
+     * before the one covering the current time.
+     * 
+     * @param nowMillis Current wall clock time.
+     * @param bucketsAgo 0 for the current bucket, 1 for the one before it, etc.
+     * 
+     * @return Milliseconds of exposure, 0 if the bucket has no data.
+     */
+    public long getExposure(long nowMillis, int bucketsAgo) {
+        int slot = findSlot(nowMillis / bucketMillis - bucketsAgo);
+        return slot == -1 ? 0 : exposureMillis[slot];
+    }
+    
+    /**
+     * Gets the damage events recorded in the bucket the given number of buckets
+     * before the one covering the current time.
+     * 
+     * @param nowMillis Current wall clock time.
+     * @param bucketsAgo 0 for the current bucket, 1 for the one before it, etc.
+     * 
+     * @return Number of damage events, 0 if the bucket has no data.
+     */
+    public int getDamage(long nowMillis, int bucketsAgo) {
+        int slot = findSlot(nowMillis / bucketMillis - bucketsAgo);
+        return slot == -1 ? 0 : damageCounts[slot];
+    }
+    
+    /**
+     * Sums the exposure over the most recent <code>buckets</code> buckets,
+     * including the current one.
+     * 
+     * @param nowMillis Current wall clock time.
+     * @param buckets Number of buckets to sum, capped at the size of the ring.
+     * 
+     * @return Total milliseconds of exposure.
+     */
+    public long sumExposure(long nowMillis, int buckets) {
+        long total = 0;
+        
+        for (int bucketsAgo = 0; bucketsAgo < Math.min(buckets, bucketKeys.length); bucketsAgo++) {
+            total += getExposure(nowMillis, bucketsAgo);
+        }
+        
+        return total;
+    }
+    
+    /**
+     * Sums the damage events over the most recent <code>buckets</code> buckets,
+     * including the current one.
+     * 
+     * @param nowMillis Current wall clock time.
+     * @param buckets Number of buckets to sum, capped at the size of the ring.
+     * 
+     * @return Total number of damage events.
+     */
+    public int sumDamage(long nowMillis, int buckets) {
+        int total = 0;
+        
+        for (int bucketsAgo = 0; bucketsAgo < Math.min(buckets, bucketKeys.length); bucketsAgo++) {
+            total += getDamage(nowMillis, bucketsAgo);
+        }
+        
+        return total;
+    }
+    
+    /**
+     * Finds the slot holding the given bucket.
+     * 
+     * @param bucketKey
+     * @return The slot index, -1 if the bucket is not (or no longer) in the ring.
+     */
+    private int findSlot(long bucketKey) {
+        if (bucketKey < 0) {
+            return -1;
+        }
+        
+        int slot = (int) (bucketKey % bucketKeys.length);
+        return bucketKeys[slot] == bucketKey ? slot : -1;
+    }
+    
+    /**
+     * Gets the slot for the given bucket, clearing whatever older bucket was
+     * held there before.
+     * 
+     * @param bucketKey
+     * @return The slot index.
+     */
+    private int claimSlot(long bucketKey) {
+        int slot = (int) (bucketKey % bucketKeys.length);
+        
+        // Slot holds an older bucket which has fallen out of the ring:
+        if (bucketKeys[slot] != bucketKey) {
+            bucketKeys[slot] = bucketKey;
+            exposureMillis[slot] = 0;
+            damageCounts[slot] = 0;
+        }
+        
+        return slot;
+    }
+    
+}
@@ -0,0 +1,220 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.stats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A <code>TopExposureHeap</code> keeps the <code>capacity</code> highest
+ * scoring ids it has been given, where a score is a player's total time spent
+ * exposed.
+ * 
+ * The entries are held in a min-heap, so the lowest of the top scores is always
+ * at the root and can be replaced in logarithmic time when a higher score comes
+ * along. The position of each id in the heap is indexed so that the score of
+ * an id which is already in the heap can be updated in place.
+ * 
+ * @author Trystan Cannon
+ */
+public final class TopExposureHeap {
+    
+    /**
+     * The ids in the heap, ordered as a min-heap on <code>scores</code>.
+     */
+    private final UUID[] ids;
+    
+    /**
+     * The last known name of the id at the same index in <code>ids</code>.
+     */
+    private final String[] names;
+    
+    /**
+     * The score of the id at the same index in <code>ids</code>.
+     */
+    private final long[] scores;
+    
+    /**
+     * The index in the heap of each id currently held.
+     */
+    private final HashMap<UUID, Integer> positions = new HashMap<>();
+    
+    /**
+     * The number of entries currently in the heap.
+     */
+    private int size = 0;
+    
+    public TopExposureHeap(int capacity) {
+        this.ids = new UUID[capacity];
+        this.names = new String[capacity];
+        this.scores = new long[capacity];
+    }
+    
+    /**
+     * Offers the given id with its current score to the heap. If the id is
+     * already in the heap, its score is updated. Otherwise, it is added if the
+     * heap is not full or if it beats the lowest score in the heap.
+     * 
+     * @param id
+     * @param name Last known name of the id.
+     * @param score
+     */
+    public void offer(UUID id, String name, long score) {
+        Integer position = positions.get(id);
+        
+        // Already one of the top ids:
+        if (position != null) {
+            names[position] = name;
+            scores[position] = score;
+            siftDown(siftUp(position));
+        // Room left in the heap:
+        } else if (size < ids.length) {
+            place(size, id, name, score);
+            size++;
+            siftUp(size - 1);
+        // Beats the lowest of the top scores:
+        } else if (size > 0 && score > scores[0]) {
+            positions.remove(ids[0]);
+            place(0, id, name, score);
+            siftDown(0);
+        }
+    }
+    
+    /**
+     * Gets the score held for the given id.
+     * 
+     * @param id
+     * @return The score, -1 if the id is not in the heap.
+     */
+    public long getScore(UUID id) {
+        Integer position = positions.get(id);
+        return position == null ? -1 : scores[position];
+    }
+    
+    /**
+     * Gets the last known name held for the given id.
+     * 
+     * @param id
+     * @return The name, <code>null</code> if the id is not in the heap.
+     */
+    public String getName(UUID id) {
+        Integer position = positions.get(id);
+        return position == null ? null : names[position];
+    }
+    
+    /**
+     * @return The ids in the heap, highest score first.
+     */
+    public List<UUID> getTop() {
+        List<UUID> top = new ArrayList<>(size);
+        
+        for (int index = 0; index < size; index++) {
+            top.add(ids[index]);
+        }
+        
+        // Insertion sort on score, highest first. The heap is small.
+        for (int sorted = 1; sorted < top.size(); sorted++) {
+            UUID id = top.get(sorted);
+            long score = getScore(id);
+            int index = sorted - 1;
+            
+            while (index >= 0 && getScore(top.get(index)) < score) {
+                top.set(index + 1, top.get(index));
+                index--;
+            }
+            
+            top.set(index + 1, id);
+        }
+        
+        return top;
+    }
+    
+    /**
+     * Moves the entry at the given index up until its parent is no larger.
+     * 
+     * @param index
+     * @return The new index of the entry.
+     */
+    private int siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            
+            if (scores[parent] <= scores[index]) {
+                break;
+            }
+            
+            swap(index, parent);
+            index = parent;
+        }
+        
+        return index;
+    }
+    
+    /**
+     * Moves the entry at the given index down until neither child is smaller.
+     * 
+     * @param index
+     */
+    private void siftDown(int index) {
+        while (true) {
+            int smallest = index;
+            int left = index * 2 + 1;
+            int right = left + 1;
+            
+            if (left < size && scores[left] < scores[smallest]) {
+                smallest = left;
+            }
+            
+            if (right < size && scores[right] < scores[smallest]) {
+                smallest = right;
+            }
+            
+            if (smallest == index) {
+                return;
+            }
+            
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+    
+    private void swap(int first, int second) {
+        UUID firstId = ids[first];
+        String firstName = names[first];
+        long firstScore = scores[first];
+        
+        place(first, ids[second], names[second], scores[second]);
+        place(second, firstId, firstName, firstScore);
+    }
+    
+    private void place(int index, UUID id, String name, long score) {
+        ids[index] = id;
+        names[index] = name;
+        scores[index] = score;
+        positions.put(id, index);
+    }
+    
+}
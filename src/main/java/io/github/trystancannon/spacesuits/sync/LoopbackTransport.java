@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.sync;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A <code>SyncTransport</code> which passes messages between transports in the
+ * same process, for testing sync without a real network.
+ * 
+ * Transports connected to the same <code>Bus</code> receive each other's
+ * messages. Messages are not kept once delivered, so there is nothing for a
+ * transport to recall.
+ * 
+ * @author Trystan Cannon
+ */
+public final class LoopbackTransport implements SyncTransport {
+    
+    /**
+     * Connects loopback transports to each other.
+     */
+    public static final class Bus {
+        
+        /**
+         * Every transport connected to the bus.
+         */
+        private final List<LoopbackTransport> transports = new CopyOnWriteArrayList<>();
+        
+        /**
+         * @param nodeId
+         * @return A new transport for the given node, connected to this bus.
+         */
+        public LoopbackTransport connect(String nodeId) {
+            LoopbackTransport transport = new LoopbackTransport(this, nodeId);
+            transports.add(transport);
+            
+            return transport;
+        }
+        
+    }
+    
+    /**
+     * The bus this transport is connected to.
+     */
+    private final Bus bus;
+    
+    /**
+     * The node id of the server using this transport.
+     */
+    private final String nodeId;
+    
+    /**
+     * Messages sent by other transports on the bus, waiting to be received.
+     */
+    private final ConcurrentLinkedQueue<byte[]> inbox = new ConcurrentLinkedQueue<>();
+    
+    private LoopbackTransport(Bus bus, String nodeId) {
+        this.bus = bus;
+        this.nodeId = nodeId;
+    }
+    
+    @Override
+    public void send(long sequence, byte[] message) {
+        for (LoopbackTransport transport : bus.transports) {
+            if (transport != this && !transport.nodeId.equals(nodeId)) {
+                transport.inbox.add(message.clone());
+            }
+        }
+    }
+    
+    @Override
+    public List<byte[]> receive() {
+        List<byte[]> messages = new ArrayList<>();
+        byte[] message;
+        
+        while ((message = inbox.poll()) != null) {
+            messages.add(message);
+        }
+        
+        return messages;
+    }
+    
+    @Override
+    public List<byte[]> recallSent() {
+        return new ArrayList<>();
+    }
+    
+    @Override
+    public void close() {
+        bus.transports.remove(this);
+        inbox.clear();
+    }
+    
+}
@@ -0,0 +1,231 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.sync;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * A <code>SyncTransport</code> which exchanges messages through a directory
+ * shared by every server (a network mount, for example).
+ * 
+ * Each message is written to its own file named [node id]-[sequence].delta.
+ * Files are written under a temporary name and renamed once complete, so a
+ * reader never sees half a message. Each server deletes its own files once
+ * they are older than <code>RETENTION_MILLIS</code>, the next time it sends.
+ * Files older than that are never received, even if their sender has not
+ * deleted them yet (because it has stopped, for example), so a server starting
+ * up doesn't apply writes which everyone else has long since moved past.
+ * 
+ * @author Trystan Cannon
+ */
+public final class SharedDirectoryTransport implements SyncTransport {
+    
+    /**
+     * How long a server's message files are kept before it deletes them.
+     */
+    public static final long RETENTION_MILLIS = 5L * 60L * 1000L;
+    
+    /**
+     * The extension of message files.
+     */
+    private static final String EXTENSION = ".delta";
+    
+    /**
+     * Orders message files by node, then by the order they were sent.
+     */
+    private static final Comparator<File> BY_NODE_AND_SEQUENCE = new Comparator<File>() {
+        
+        @Override
+        public int compare(File first, File second) {
+            int byNode = getNode(first.getName()).compareTo(getNode(second.getName()));
+            return byNode != 0 ? byNode : Long.compare(getSequence(first.getName()), getSequence(second.getName()));
+        }
+        
+    };
+    
+    /**
+     * The shared directory.
+     */
+    private final File directory;
+    
+    /**
+     * The node id of this server.
+     */
+    private final String nodeId;
+    
+    /**
+     * The names of the files which have already been received. Names of files
+     * which no longer exist are dropped, so this never holds more than the
+     * directory does.
+     */
+    private Set<String> received = new HashSet<>();
+    
+    public SharedDirectoryTransport(File directory, String nodeId) {
+        this.directory = directory;
+        this.nodeId = nodeId;
+        
+        // Create the shared directory if it doesn't already exist:
+        if (!directory.exists()) {
+            directory.mkdirs();
+        }
+    }
+    
+    @Override
+    public void send(long sequence, byte[] message) throws IOException {
+        File file = new File(directory, nodeId + "-" + sequence + EXTENSION);
+        File tempFile = new File(directory, "." + file.getName() + ".tmp");
+        
+        Files.write(tempFile.toPath(), message);
+        Files.move(tempFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        
+        deleteExpired();
+    }
+    
+    @Override
+    public List<byte[]> receive() throws IOException {
+        File[] files = directory.listFiles();
+        List<byte[]> messages = new ArrayList<>();
+        
+        if (files == null) {
+            throw new IOException("Could not list " + directory + ".");
+        }
+        
+        // Deliver each server's messages in the order they were sent.
+        Arrays.sort(files, BY_NODE_AND_SEQUENCE);
+        
+        Set<String> present = new HashSet<>();
+        long expiry = System.currentTimeMillis() - RETENTION_MILLIS;
+        
+        for (File file : files) {
+            String name = file.getName();
+            
+            // Skip anything that isn't a complete, unexpired message from another server:
+            if (!name.endsWith(EXTENSION) || name.startsWith(".") || getSequence(name) == -1 || getNode(name).equals(nodeId) || file.lastModified() < expiry) {
+                continue;
+            }
+            
+            present.add(name);
+            
+            if (!received.contains(name)) {
+                try {
+                    messages.add(Files.readAllBytes(file.toPath()));
+                } catch (IOException failure) {
+                    // Deleted by its sender since the listing; it has expired anyway.
+                    present.remove(name);
+                }
+            }
+        }
+        
+        received = present;
+        return messages;
+    }
+    
+    @Override
+    public List<byte[]> recallSent() throws IOException {
+        File[] files = directory.listFiles();
+        List<byte[]> messages = new ArrayList<>();
+        
+        if (files == null) {
+            throw new IOException("Could not list " + directory + ".");
+        }
+        
+        Arrays.sort(files, BY_NODE_AND_SEQUENCE);
+        
+        for (File file : files) {
+            String name = file.getName();
+            
+            // Skip anything that isn't a complete message from this server:
+            if (!name.endsWith(EXTENSION) || name.startsWith(".") || getSequence(name) == -1 || !getNode(name).equals(nodeId)) {
+                continue;
+            }
+            
+            try {
+                messages.add(Files.readAllBytes(file.toPath()));
+            } catch (IOException failure) {
+                // Expired and deleted since the listing.
+            }
+        }
+        
+        return messages;
+    }
+    
+    @Override
+    public void close() {
+    }
+    
+    /**
+     * Deletes this server's message files which are older than <code>RETENTION_MILLIS</code>.
+     */
+    private void deleteExpired() {
+        File[] files = directory.listFiles();
+        long expiry = System.currentTimeMillis() - RETENTION_MILLIS;
+        
+        if (files == null) {
+            return;
+        }
+        
+        for (File file : files) {
+            if (file.getName().endsWith(EXTENSION) && getNode(file.getName()).equals(nodeId) && file.lastModified() < expiry) {
+                file.delete();
+            }
+        }
+    }
+    
+    /**
+     * @param fileName
+     * @return The node id part of a message file's name.
+     */
+    private static String getNode(String fileName) {
+        int separator = fileName.lastIndexOf('-');
+        return separator == -1 ? "" : fileName.substring(0, separator);
+    }
+    
+    /**
+     * @param fileName
+     * @return The sequence number part of a message file's name, -1 if it has none.
+     */
+    private static long getSequence(String fileName) {
+        int separator = fileName.lastIndexOf('-');
+        
+        if (separator == -1 || !fileName.endsWith(EXTENSION)) {
+            return -1;
+        }
+        
+        try {
+            return Long.parseLong(fileName.substring(separator + 1, fileName.length() - EXTENSION.length()));
+        } catch (NumberFormatException failure) {
+            return -1;
+        }
+    }
+    
+}
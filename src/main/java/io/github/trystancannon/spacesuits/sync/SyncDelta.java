@@ -0,0 +1,132 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.sync;
+
+import java.util.UUID;
+
+/**
+ * A single change to the state shared between servers: whether a world is a
+ * space world, or how much exposure a player has built up.
+ * 
+ * Every delta carries the Lamport clock of the write it came from and the node
+ * id of the server which made it. When two servers change the same thing, the
+ * delta with the highest clock wins (ties going to the server with the greater
+ * node id), so every server ends up agreeing no matter which order the deltas
+ * arrive in, or which server passes them on.
+ * 
+ * @author Trystan Cannon
+ */
+public final class SyncDelta {
+    
+    /**
+     * The kinds of state which can be synced.
+     */
+    public enum Kind {
+        
+        /**
+         * Whether or not a world is a space world. The id is the world's UUID
+         * and the value is 1 if it is a space world, 0 if it isn't.
+         */
+        SPACE_WORLD,
+        
+        /**
+         * The exposure a player has built up towards their next damage. The id
+         * is the player's UUID and the value is the exposure in nanoseconds.
+         */
+        PLAYER_EXPOSURE;
+        
+    }
+    
+    private final Kind kind;
+    private final UUID id;
+    private final long value;
+    private final long clock;
+    private final String origin;
+    
+    public SyncDelta(Kind kind, UUID id, long value, long clock) {
+        this(kind, id, value, clock, null);
+    }
+    
+    public SyncDelta(Kind kind, UUID id, long value, long clock, String origin) {
+        this.kind = kind;
+        this.id = id;
+        this.value = value;
+        this.clock = clock;
+        this.origin = origin;
+    }
+    
+    /**
+     * @return The kind of state changed.
+     */
+    public Kind getKind() {
+        return kind;
+    }
+    
+    /**
+     * @return The UUID of the world or player changed.
+     */
+    public UUID getId() {
+        return id;
+    }
+    
+    /**
+     * @return The new value.
+     */
+    public long getValue() {
+        return value;
+    }
+    
+    /**
+     * @return The Lamport clock of the write, 0 if it has not been stamped yet.
+     */
+    public long getClock() {
+        return clock;
+    }
+    
+    /**
+     * @return The node id of the server which made the write, <code>null</code> if it has not been stamped yet.
+     */
+    public String getOrigin() {
+        return origin;
+    }
+    
+    /**
+     * @param clock
+     * @param origin
+     * 
+     * @return A copy of this delta stamped with the given clock and origin.
+     */
+    public SyncDelta withStamp(long clock, String origin) {
+        return new SyncDelta(kind, id, value, clock, origin);
+    }
+    
+    /**
+     * @param other A write to the same world or player.
+     * @return <code>true</code> if the given write wins over this one.
+     */
+    public boolean isOlderThan(SyncDelta other) {
+        return other.clock > clock || (other.clock == clock && other.origin.compareTo(origin) > 0);
+    }
+    
+}
@@ -0,0 +1,180 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.sync;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * A batch of <code>SyncDelta</code>s sent by one server. Each server numbers
+ * its messages with an increasing sequence number so that receivers can tell
+ * which they have already applied.
+ * 
+ * Messages are encoded in a compact binary format:
+ * 
+ *  int magic, byte format version, UTF origin node id, long sequence,
+ *  int delta count, then for each delta:
+ *  byte kind, long id (most significant bits), long id (least significant bits),
+ *  long value, long clock, UTF origin node id of the write (empty if it is the
+ *  message's origin).
+ * 
+ * A message may pass on writes made by other servers, so every decoded delta
+ * carries the origin of its own write, not just of the message.
+ * 
+ * @author Trystan Cannon
+ */
+public final class SyncMessage {
+    
+    /**
+     * Marks the start of every encoded message ("SPSU").
+     */
+    public static final int MAGIC = 0x53505355;
+    
+    /**
+     * The version of the encoding. Messages with any other version are rejected.
+     */
+    public static final byte FORMAT_VERSION = 2;
+    
+    /**
+     * The fewest bytes a delta can be encoded in.
+     */
+    private static final int MIN_DELTA_BYTES = 35;
+    
+    private final String origin;
+    private final long sequence;
+    private final List<SyncDelta> deltas;
+    
+    public SyncMessage(String origin, long sequence, List<SyncDelta> deltas) {
+        this.origin = origin;
+        this.sequence = sequence;
+        this.deltas = Collections.unmodifiableList(new ArrayList<>(deltas));
+    }
+    
+    /**
+     * @return The node id of the server which sent the message.
+     */
+    public String getOrigin() {
+        return origin;
+    }
+    
+    /**
+     * @return The sequence number of the message among those sent by its origin.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+    
+    /**
+     * @return The deltas in the message.
+     */
+    public List<SyncDelta> getDeltas() {
+        return deltas;
+    }
+    
+    /**
+     * @return The message encoded as bytes.
+     */
+    public byte[] encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + deltas.size() * MIN_DELTA_BYTES);
+        
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(MAGIC);
+            out.writeByte(FORMAT_VERSION);
+            out.writeUTF(origin);
+            out.writeLong(sequence);
+            out.writeInt(deltas.size());
+            
+            for (SyncDelta delta : deltas) {
+                out.writeByte(delta.getKind().ordinal());
+                out.writeLong(delta.getId().getMostSignificantBits());
+                out.writeLong(delta.getId().getLeastSignificantBits());
+                out.writeLong(delta.getValue());
+                out.writeLong(delta.getClock());
+                out.writeUTF(delta.getOrigin() == null || delta.getOrigin().equals(origin) ? "" : delta.getOrigin());
+            }
+        } catch (IOException failure) {
+            // Writing to memory can't fail.
+            throw new IllegalStateException(failure);
+        }
+        
+        return bytes.toByteArray();
+    }
+    
+    /**
+     * Decodes a message encoded with <code>encode</code>.
+     * 
+     * @param encoded
+     * @return The decoded message.
+     * 
+     * @throws IOException If the bytes are not a valid message.
+     */
+    public static SyncMessage decode(byte[] encoded) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded))) {
+            if (in.readInt() != MAGIC) {
+                throw new IOException("Not a sync message.");
+            }
+            
+            byte version = in.readByte();
+            
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported sync message version " + version + ".");
+            }
+            
+            String origin = in.readUTF();
+            long sequence = in.readLong();
+            int count = in.readInt();
+            
+            if (count < 0 || count > encoded.length / MIN_DELTA_BYTES) {
+                throw new IOException("Bad delta count " + count + ".");
+            }
+            
+            List<SyncDelta> deltas = new ArrayList<>(count);
+            
+            for (int index = 0; index < count; index++) {
+                int kind = in.readByte();
+                
+                if (kind < 0 || kind >= SyncDelta.Kind.values().length) {
+                    throw new IOException("Unknown delta kind " + kind + ".");
+                }
+                
+                UUID id = new UUID(in.readLong(), in.readLong());
+                long value = in.readLong();
+                long clock = in.readLong();
+                String writeOrigin = in.readUTF();
+                
+                deltas.add(new SyncDelta(SyncDelta.Kind.values()[kind], id, value, clock, writeOrigin.isEmpty() ? origin : writeOrigin));
+            }
+            
+            return new SyncMessage(origin, sequence, deltas);
+        }
+    }
+    
+}
@@ -0,0 +1,694 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.sync;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+import org.bukkit.plugin.Plugin;
+import org.bukkit.scheduler.BukkitTask;
+
+/**
+ * Keeps space worlds and players' exposure in step across a network of servers.
+ * 
+ * The main thread only hands changes to the service (<code>recordSpaceWorld</code>,
+ * <code>recordExposure</code>) and applies the remote changes it is given back,
+ * both through lock-free queues. Everything else runs on an asynchronous task
+ * every <code>periodTicks</code> ticks:
+ * 
+ *  - Local changes are coalesced (only the latest change to each world or player
+ *    is kept), stamped with a Lamport clock and sent as one <code>SyncMessage</code>.
+ *    Changes which fail to send are retried with the clock they were stamped with,
+ *    unless a newer change to the same world or player replaces them.
+ *  - Messages from other servers are received and checked against a
+ *    <code>VersionVector</code>, so a message delivered twice is applied once.
+ *  - Each remote delta is applied only if its clock is newer than the last write
+ *    seen for the same world or player, so all servers settle on the same state.
+ *  - Every <code>FULL_STATE_INTERVAL_MILLIS</code>, the last write seen for every
+ *    space world is sent again, with its original clock and origin. A server
+ *    which has just joined, or was away for longer than the transport keeps
+ *    messages, catches up from these without anyone having to notice it was
+ *    gone. Exposure is left out; it only matters while a player moves between
+ *    servers, and applying an old one late would only do harm.
+ * 
+ * The clock, sequence number, <code>VersionVector</code> and last write seen for
+ * each world or player are saved to a state file after every sync which changes
+ * them, and read back when the service is created. A restarted server therefore
+ * skips messages it already applied and still knows which writes are newer than
+ * the ones it has, even once its own messages have expired from the transport.
+ * Sequence numbers and clocks also never go below the current time, so that a
+ * server which lost its state file is not mistaken for one already applied.
+ * Before its first receive, the service recalls the messages it sent before a
+ * restart which the transport still holds.
+ * 
+ * @author Trystan Cannon
+ */
+public final class SyncService {
+    
+    /**
+     * The most deltas sent in a single message. Larger batches are split.
+     */
+    public static final int MAX_DELTAS_PER_MESSAGE = 1024;
+    
+    /**
+     * The most worlds and players whose last write is remembered. The least
+     * recently written are forgotten first.
+     */
+    public static final int MAX_TRACKED_KEYS = 65536;
+    
+    /**
+     * The longest <code>stop</code> waits for a running sync to finish with
+     * the transport before closing it anyway.
+     */
+    public static final long STOP_TIMEOUT_MILLIS = 2000L;
+    
+    /**
+     * How often every space world is sent again for servers catching up. Well
+     * within <code>SharedDirectoryTransport.RETENTION_MILLIS</code>, so that a
+     * server starting up always finds a recent full state from every other.
+     */
+    public static final long FULL_STATE_INTERVAL_MILLIS = 60L * 1000L;
+    
+    /**
+     * Marks the start of the state file ("SPSS").
+     */
+    private static final int STATE_MAGIC = 0x53505353;
+    
+    /**
+     * The version of the state file's format. Files with any other version are ignored.
+     */
+    private static final byte STATE_FORMAT_VERSION = 2;
+    
+    /**
+     * Receives the remote changes.
+     */
+    private final SyncTarget target;
+    
+    /**
+     * Carries messages to and from the other servers.
+     */
+    private final SyncTransport transport;
+    
+    /**
+     * The node id of this server.
+     */
+    private final String nodeId;
+    
+    /**
+     * Where the sync state is saved between restarts, <code>null</code> if it isn't.
+     */
+    private final File stateFile;
+    
+    /**
+     * Where failures are reported.
+     */
+    private final Logger logger;
+    
+    /**
+     * Local changes waiting to be sent. Written by the main thread.
+     */
+    private final ConcurrentLinkedQueue<SyncDelta> outbound = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * Stamped changes which failed to send, to be retried before anything in
+     * <code>outbound</code>. Sync thread only.
+     */
+    private final List<SyncDelta> retry = new ArrayList<>();
+    
+    /**
+     * Remote changes waiting to be applied. Read by the main thread.
+     */
+    private final ConcurrentLinkedQueue<SyncDelta> inbound = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * The latest message applied from each server. Sync thread only.
+     */
+    private final VersionVector versions = new VersionVector();
+    
+    /**
+     * The last write seen for each world or player, stamped with its clock and
+     * origin. Sync thread only.
+     */
+    private final Map<String, SyncDelta> writes = new LinkedHashMap<String, SyncDelta>(16, 0.75f, true) {
+        
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, SyncDelta> eldest) {
+            return size() > MAX_TRACKED_KEYS;
+        }
+        
+    };
+    
+    /**
+     * This server's Lamport clock. Sync thread only.
+     */
+    private long clock = System.currentTimeMillis();
+    
+    /**
+     * The sequence number of the last message sent. Sync thread only.
+     */
+    private long sequence = System.currentTimeMillis() * 1000L;
+    
+    /**
+     * Whether or not the messages sent before a restart have been recalled.
+     * Sync thread only.
+     */
+    private boolean recalled = false;
+    
+    /**
+     * Whether or not anything saved in the state file has changed since it was
+     * last written. Sync thread only.
+     */
+    private boolean stateChanged = false;
+    
+    /**
+     * When the last full state was sent, in milliseconds. Sync thread only.
+     */
+    private long lastFullStateMillis = 0L;
+    
+    /**
+     * Milliseconds between each full state. Only ever changed by tests.
+     */
+    long fullStateIntervalMillis = FULL_STATE_INTERVAL_MILLIS;
+    
+    /**
+     * Held while a sync is running, so that runs never overlap and the transport
+     * is not closed underneath one.
+     */
+    private final ReentrantLock syncLock = new ReentrantLock();
+    
+    /**
+     * Set once the service is stopping; no sync starts after it.
+     */
+    private volatile boolean stopped = false;
+    
+    /**
+     * The asynchronous sync task, <code>null</code> if not started.
+     */
+    private BukkitTask syncTask = null;
+    
+    /**
+     * The task ID of the main thread task applying remote changes, -1 if not started.
+     */
+    private int applyTaskId = -1;
+    
+    /**
+     * The plugin the tasks were scheduled for, <code>null</code> if not started.
+     */
+    private Plugin plugin = null;
+    
+    /**
+     * Creates the service, reading back the state saved by the last one with the
+     * same state file, if there is any.
+     * 
+     * @param target
+     * @param transport
+     * @param nodeId Node id of this server, the same across restarts.
+     * @param stateFile File to save the sync state in, <code>null</code> to not save it.
+     * @param logger 
+     */
+    public SyncService(SyncTarget target, SyncTransport transport, String nodeId, File stateFile, Logger logger) {
+        this.target = target;
+        this.transport = transport;
+        this.nodeId = nodeId;
+        this.stateFile = stateFile;
+        this.logger = logger;
+        
+        if (stateFile != null) {
+            loadState();
+        }
+    }
+    
+    /**
+     * Starts syncing every <code>periodTicks</code> ticks, and applying remote
+     * changes every tick. Must be called from the main thread.
+     * 
+     * @param plugin Plugin to schedule the tasks for.
+     * @param periodTicks Ticks between each sync, at least 1.
+     */
+    public void start(Plugin plugin, long periodTicks) {
+        this.plugin = plugin;
+        
+        syncTask = plugin.getServer().getScheduler().runTaskTimerAsynchronously(plugin, new Runnable() {
+            
+            @Override
+            public void run() {
+                sync();
+            }
+            
+        }, periodTicks, periodTicks);
+        
+        applyTaskId = plugin.getServer().getScheduler().scheduleSyncRepeatingTask(plugin, new Runnable() {
+            
+            @Override
+            public void run() {
+                applyRemoteChanges();
+            }
+            
+        }, 1L, 1L);
+    }
+    
+    /**
+     * Stops syncing, sends any changes still queued and closes the transport.
+     * Waits at most <code>STOP_TIMEOUT_MILLIS</code> for a sync which is already
+     * running; if it is still running after that, queued changes are dropped.
+     * Must be called from the main thread.
+     */
+    public void stop() {
+        stopped = true;
+        
+        if (syncTask != null) {
+            syncTask.cancel();
+            syncTask = null;
+        }
+        
+        if (applyTaskId != -1) {
+            plugin.getServer().getScheduler().cancelTask(applyTaskId);
+            applyTaskId = -1;
+        }
+        
+        boolean locked = false;
+        
+        // Give a sync which is already running a chance to finish with the transport.
+        try {
+            locked = syncLock.tryLock(STOP_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        
+        if (!locked) {
+            logger.warning("Sync still running after " + STOP_TIMEOUT_MILLIS + "ms; dropping " + outbound.size() + " unsent changes and closing its transport anyway.");
+        }
+        
+        try {
+            // Nothing else is using the transport, so send what the main thread queued last:
+            if (locked) {
+                sendLocalChanges();
+                
+                if (stateChanged && stateFile != null) {
+                    saveState();
+                }
+            }
+            
+            transport.close();
+        } finally {
+            if (locked) {
+                syncLock.unlock();
+            }
+        }
+    }
+    
+    /**
+     * Queues a change to whether a world is a space world to be sent to the
+     * other servers.
+     * 
+     * @param worldId
+     * @param spaceWorld 
+     */
+    public void recordSpaceWorld(UUID worldId, boolean spaceWorld) {
+        outbound.add(new SyncDelta(SyncDelta.Kind.SPACE_WORLD, worldId, spaceWorld ? 1L : 0L, 0L));
+    }
+    
+    /**
+     * Queues a player's exposure to be sent to the other servers, so it can
+     * follow them if they join one.
+     * 
+     * @param playerId
+     * @param exposureNanos 
+     */
+    public void recordExposure(UUID playerId, long exposureNanos) {
+        outbound.add(new SyncDelta(SyncDelta.Kind.PLAYER_EXPOSURE, playerId, exposureNanos, 0L));
+    }
+    
+    /**
+     * Sends local changes and receives remote ones. Runs on the sync thread.
+     */
+    void sync() {
+        // Skip this run if the last one is still going, or the service is stopping:
+        if (stopped || !syncLock.tryLock()) {
+            return;
+        }
+        
+        try {
+            if (stopped) {
+                return;
+            }
+            
+            // Own writes from before a restart must be known before anyone else's are received:
+            if (!recalled) {
+                recalled = recallSentChanges();
+            }
+            
+            sendLocalChanges();
+            
+            if (recalled) {
+                receiveRemoteChanges();
+                
+                // Recalled writes must be known first, or they would be left out:
+                if (System.currentTimeMillis() - lastFullStateMillis >= fullStateIntervalMillis) {
+                    sendFullState();
+                }
+            }
+            
+            if (stateChanged && stateFile != null) {
+                saveState();
+            }
+        } finally {
+            syncLock.unlock();
+        }
+    }
+    
+    /**
+     * Gives every remote change received so far to the <code>target</code>, as
+     * one batch. Runs on the main thread.
+     */
+    void applyRemoteChanges() {
+        List<SyncDelta> changes = new ArrayList<>();
+        SyncDelta delta;
+        
+        while ((delta = inbound.poll()) != null) {
+            changes.add(delta);
+        }
+        
+        if (!changes.isEmpty()) {
+            target.applySyncChanges(changes);
+        }
+    }
+    
+    /**
+     * Remembers the writes in the messages this server sent which the transport
+     * still holds, and moves the clock and sequence number past them.
+     * 
+     * @return <code>true</code> if the messages were recalled.
+     */
+    private boolean recallSentChanges() {
+        List<byte[]> sent;
+        
+        try {
+            sent = transport.recallSent();
+        } catch (IOException failure) {
+            logger.warning("Failed to recall sent sync changes; not receiving until they are: " + failure);
+            return false;
+        }
+        
+        for (byte[] encoded : sent) {
+            SyncMessage message;
+            
+            try {
+                message = SyncMessage.decode(encoded);
+            } catch (IOException failure) {
+                logger.warning("Ignoring bad sync message: " + failure.getMessage());
+                continue;
+            }
+            
+            sequence = Math.max(sequence, message.getSequence());
+            
+            for (SyncDelta change : message.getDeltas()) {
+                accept(change);
+            }
+        }
+        
+        return true;
+    }
+    
+    /**
+     * Coalesces, stamps and sends every queued local change, after any which
+     * failed to send before.
+     */
+    private void sendLocalChanges() {
+        LinkedHashMap<String, SyncDelta> latest = new LinkedHashMap<>();
+        SyncDelta delta;
+        
+        // Changes to retry keep their clocks, and are replaced by any newer change to the same world or player.
+        for (SyncDelta failed : retry) {
+            latest.put(getKey(failed), failed);
+        }
+        
+        retry.clear();
+        
+        while ((delta = outbound.poll()) != null) {
+            clock = Math.max(clock + 1, System.currentTimeMillis());
+            
+            SyncDelta stamped = delta.withStamp(clock, nodeId);
+            writes.put(getKey(stamped), stamped);
+            
+            latest.remove(getKey(stamped));
+            latest.put(getKey(stamped), stamped);
+        }
+        
+        for (List<SyncDelta> batch : split(latest.values())) {
+            if (!send(batch)) {
+                retry.addAll(batch);
+            }
+        }
+    }
+    
+    /**
+     * Sends the last write seen for every space world. Batches which fail to
+     * send are not retried; the next full state carries them anyway.
+     */
+    private void sendFullState() {
+        List<SyncDelta> spaceWorlds = new ArrayList<>();
+        
+        for (SyncDelta write : writes.values()) {
+            if (write.getKind() == SyncDelta.Kind.SPACE_WORLD) {
+                spaceWorlds.add(write);
+            }
+        }
+        
+        for (List<SyncDelta> batch : split(spaceWorlds)) {
+            send(batch);
+        }
+        
+        lastFullStateMillis = System.currentTimeMillis();
+    }
+    
+    /**
+     * @param changes
+     * @return The given changes split into batches of at most <code>MAX_DELTAS_PER_MESSAGE</code>.
+     */
+    private static List<List<SyncDelta>> split(Collection<SyncDelta> changes) {
+        List<List<SyncDelta>> batches = new ArrayList<>();
+        List<SyncDelta> batch = new ArrayList<>();
+        
+        for (SyncDelta change : changes) {
+            batch.add(change);
+            
+            if (batch.size() == MAX_DELTAS_PER_MESSAGE) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+            }
+        }
+        
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+        
+        return batches;
+    }
+    
+    /**
+     * Sends the given deltas as one message.
+     * 
+     * @param batch
+     * @return <code>true</code> if the message was sent.
+     */
+    private boolean send(List<SyncDelta> batch) {
+        sequence++;
+        stateChanged = true;
+        
+        try {
+            transport.send(sequence, new SyncMessage(nodeId, sequence, batch).encode());
+            return true;
+        } catch (IOException failure) {
+            logger.warning("Failed to send " + batch.size() + " sync changes: " + failure);
+            return false;
+        }
+    }
+    
+    /**
+     * Receives messages from the other servers, queueing every change which is
+     * newer than the last write seen for its world or player.
+     */
+    private void receiveRemoteChanges() {
+        List<byte[]> received;
+        
+        try {
+            received = transport.receive();
+        } catch (IOException failure) {
+            logger.warning("Failed to receive sync changes: " + failure);
+            return;
+        }
+        
+        for (byte[] encoded : received) {
+            SyncMessage message;
+            
+            try {
+                message = SyncMessage.decode(encoded);
+            } catch (IOException failure) {
+                logger.warning("Ignoring bad sync message: " + failure.getMessage());
+                continue;
+            }
+            
+            // Own message, or already applied:
+            if (message.getOrigin().equals(nodeId) || !versions.advance(message.getOrigin(), message.getSequence())) {
+                continue;
+            }
+            
+            stateChanged = true;
+            
+            // Deltas passed on from other servers, this one included, are checked the same way:
+            for (SyncDelta delta : message.getDeltas()) {
+                if (accept(delta)) {
+                    inbound.add(delta);
+                }
+            }
+        }
+    }
+    
+    /**
+     * Records the given write as the last one seen for its world or player if
+     * it is newer than the one currently held, and moves the clock past it.
+     * 
+     * @param delta A stamped write.
+     * @return <code>true</code> if the write is newer and should be applied.
+     */
+    private boolean accept(SyncDelta delta) {
+        SyncDelta current = writes.get(getKey(delta));
+        clock = Math.max(clock, delta.getClock());
+        
+        if (current != null && !current.isOlderThan(delta)) {
+            return false;
+        }
+        
+        writes.put(getKey(delta), delta);
+        stateChanged = true;
+        
+        return true;
+    }
+    
+    /**
+     * Writes the clock, sequence number, versions and last writes to the state
+     * file. The file is written under a temporary name and moved into place, so
+     * a crash never leaves half of it behind. Failures are only logged; the
+     * state is written again after the next change.
+     */
+    private void saveState() {
+        Path path = stateFile.toPath();
+        Path tempPath = path.resolveSibling(stateFile.getName() + ".tmp");
+        
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+                out.writeInt(STATE_MAGIC);
+                out.writeByte(STATE_FORMAT_VERSION);
+                out.writeUTF(nodeId);
+                out.writeLong(clock);
+                out.writeLong(sequence);
+                versions.writeTo(out);
+                out.writeInt(writes.size());
+                
+                // Least recently written first, so they are forgotten in the same order once read back.
+                for (SyncDelta write : writes.values()) {
+                    out.writeByte(write.getKind().ordinal());
+                    out.writeLong(write.getId().getMostSignificantBits());
+                    out.writeLong(write.getId().getLeastSignificantBits());
+                    out.writeLong(write.getValue());
+                    out.writeLong(write.getClock());
+                    out.writeUTF(write.getOrigin());
+                }
+            }
+            
+            Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            stateChanged = false;
+        } catch (IOException failure) {
+            logger.warning("Failed to save sync state to " + stateFile + ": " + failure);
+        }
+    }
+    
+    /**
+     * Reads back the state saved by <code>saveState</code>. The clock and
+     * sequence number only ever move forward. A missing file is a fresh start;
+     * an unreadable one is logged and ignored.
+     */
+    private void loadState() {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(stateFile.toPath())))) {
+            if (in.readInt() != STATE_MAGIC || in.readByte() != STATE_FORMAT_VERSION) {
+                throw new IOException("Not a sync state file of this version.");
+            }
+            
+            // Someone else's state, most likely a copied data folder:
+            if (!in.readUTF().equals(nodeId)) {
+                throw new IOException("Saved by a different node id.");
+            }
+            
+            clock = Math.max(clock, in.readLong());
+            sequence = Math.max(sequence, in.readLong());
+            versions.readFrom(in);
+            
+            int count = in.readInt();
+            
+            for (int index = 0; index < count; index++) {
+                int kind = in.readByte();
+                
+                if (kind < 0 || kind >= SyncDelta.Kind.values().length) {
+                    throw new IOException("Unknown delta kind " + kind + ".");
+                }
+                
+                UUID id = new UUID(in.readLong(), in.readLong());
+                SyncDelta write = new SyncDelta(SyncDelta.Kind.values()[kind], id, in.readLong(), in.readLong(), in.readUTF());
+                
+                writes.put(getKey(write), write);
+            }
+        } catch (NoSuchFileException missing) {
+            // Never synced before.
+        } catch (IOException failure) {
+            logger.warning("Ignoring sync state in " + stateFile + ": " + failure);
+        }
+    }
+    
+    /**
+     * @param delta
+     * @return The key identifying the world or player the delta changes.
+     */
+    private static String getKey(SyncDelta delta) {
+        return delta.getKind().ordinal() + ":" + delta.getId();
+    }
+    
+}
@@ -0,0 +1,74 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.sync;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Carries encoded <code>SyncMessage</code>s between servers.
+ * 
+ * A transport must deliver each server's messages in the order they were
+ * sent, and must not deliver a server's own messages back to it. It may
+ * deliver a message more than once. Transports are only ever used from the
+ * sync thread.
+ * 
+ * @author Trystan Cannon
+ */
+public interface SyncTransport {
+    
+    /**
+     * Sends the given message to every other server.
+     * 
+     * @param sequence Sequence number of the message.
+     * @param message Encoded message.
+     * 
+     * @throws IOException 
+     */
+    void send(long sequence, byte[] message) throws IOException;
+    
+    /**
+     * @return Every encoded message received from other servers since the last call.
+     * 
+     * @throws IOException 
+     */
+    List<byte[]> receive() throws IOException;
+    
+    /**
+     * Gets the messages this server sent which the transport still holds, so
+     * that a restarted server can recall its own recent writes before it
+     * receives anyone else's.
+     * 
+     * @return Every encoded message this server sent that is still held, in the order sent.
+     * 
+     * @throws IOException 
+     */
+    List<byte[]> recallSent() throws IOException;
+    
+    /**
+     * Releases anything held by the transport.
+     */
+    void close();
+    
+}
@@ -0,0 +1,118 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.sync;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A <code>VersionVector</code> holds, for every server, the sequence number
+ * of the latest message applied from it. A message whose sequence number is no
+ * greater than the one held for its origin has already been applied, so
+ * receiving the same message twice changes nothing.
+ * 
+ * This relies on transports delivering each server's messages in the order
+ * they were sent. A vector can be written out and read back so that a restarted
+ * server still knows what it applied.
+ * 
+ * @author Trystan Cannon
+ */
+public final class VersionVector {
+    
+    /**
+     * The latest sequence number applied from each node.
+     */
+    private final HashMap<String, Long> latest = new HashMap<>();
+    
+    /**
+     * Moves the vector forward for the given message if it is new.
+     * 
+     * @param origin Node id of the message's origin.
+     * @param sequence Sequence number of the message.
+     * 
+     * @return <code>true</code> if the message is new and should be applied.
+     */
+    public boolean advance(String origin, long sequence) {
+        Long applied = latest.get(origin);
+        
+        if (applied != null && sequence <= applied) {
+            return false;
+        }
+        
+        latest.put(origin, sequence);
+        return true;
+    }
+    
+    /**
+     * @param origin
+     * @return The latest sequence number applied from the given node, -1 if none.
+     */
+    public long get(String origin) {
+        Long applied = latest.get(origin);
+        return applied == null ? -1 : applied;
+    }
+    
+    /**
+     * Writes the vector, to be read back with <code>readFrom</code>.
+     * 
+     * @param out
+     * 
+     * @throws IOException 
+     */
+    public void writeTo(DataOutput out) throws IOException {
+        out.writeInt(latest.size());
+        
+        for (Map.Entry<String, Long> entry : latest.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeLong(entry.getValue());
+        }
+    }
+    
+    /**
+     * Reads a vector written with <code>writeTo</code>, keeping the greater
+     * sequence number for any node already held.
+     * 
+     * @param in
+     * 
+     * @throws IOException 
+     */
+    public void readFrom(DataInput in) throws IOException {
+        int count = in.readInt();
+        
+        if (count < 0) {
+            throw new IOException("Bad version count " + count + ".");
+        }
+        
+        for (int index = 0; index < count; index++) {
+            String origin = in.readUTF();
+            long sequence = in.readLong();
+            
+            latest.put(origin, Math.max(sequence, get(origin)));
+        }
+    }
+    
+}
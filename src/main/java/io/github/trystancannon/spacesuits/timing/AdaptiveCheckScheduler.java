@@ -0,0 +1,225 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.timing;
+
+import java.util.HashMap;
+import java.util.PriorityQueue;
+
+/**
+ * An <code>AdaptiveCheckScheduler</code> is a <code>Runnable</code> which runs
+ * every tick and decides, for each <code>ExposureCheckable</code>, how long to
+ * wait before its next check based on how close its player is to being damaged:
+ * 
+ *  - Exposed players are checked every <code>EXPOSED_CHECK_PERIOD</code> ticks,
+ *    and always in the exact tick their next damage is due.
+ *  - Everyone else is checked every <code>MIN_SAFE_CHECK_PERIOD</code> to
+ *    <code>MAX_SAFE_CHECK_PERIOD</code> ticks, spread out by player.
+ *  - Players who change their armor or world are checked in the next tick
+ *    through <code>requestCheck</code>.
+ * 
+ * Pending checks are kept in a priority queue ordered by the tick they are due.
+ * 
+ * In <code>TICKS</code> mode this damages players in the same ticks as checking
+ * every tick would, provided every change to a player's suit or world is followed
+ * by a <code>requestCheck</code>. Changes which cannot be seen through events
+ * (permissions, other plugins setting armor directly) are picked up by the next
+ * regular check instead.
+ * 
+ * @author Trystan Cannon
+ */
+public final class AdaptiveCheckScheduler implements Runnable {
+    
+    /**
+     * The number of ticks between checks while a player is exposed.
+     */
+    public static final long EXPOSED_CHECK_PERIOD = 5L;
+    
+    /**
+     * The fewest ticks between checks while a player is not exposed.
+     */
+    public static final long MIN_SAFE_CHECK_PERIOD = 20L;
+    
+    /**
+     * The most ticks between checks while a player is not exposed.
+     */
+    public static final long MAX_SAFE_CHECK_PERIOD = 40L;
+    
+    /**
+     * Pending checks, soonest first. Checks which have been replaced are left
+     * in the queue and skipped when they come up.
+     */
+    private final PriorityQueue<ScheduledCheck> queue = new PriorityQueue<>();
+    
+    /**
+     * The current pending check of every listener being scheduled.
+     */
+    private final HashMap<ExposureCheckable, ScheduledCheck> pendingChecks = new HashMap<>();
+    
+    /**
+     * The number of ticks since the scheduler was started.
+     */
+    private long currentTick = 0;
+    
+    /**
+     * Used to keep checks due in the same tick in the order they were scheduled.
+     */
+    private long nextSequence = 0;
+    
+    /**
+     * Runs every check which is due this tick, scheduling the next check of
+     * each listener as it goes.
+     */
+    @Override
+    public void run() {
+        currentTick++;
+        
+        while (!queue.isEmpty() && queue.peek().dueTick <= currentTick) {
+            ScheduledCheck due = queue.poll();
+            
+            // Check has since been replaced, or the listener removed:
+            if (pendingChecks.get(due.listener) != due) {
+                continue;
+            }
+            
+            due.listener.check(currentTick - due.lastCheckTick);
+            
+            // Listener wasn't removed by its check (its player was kicked by a damage or death handler):
+            if (pendingChecks.get(due.listener) == due) {
+                schedule(due.listener, currentTick + getCheckPeriod(due.listener), currentTick);
+            }
+        }
+    }
+    
+    /**
+     * Starts scheduling the given listener, checking it right away.
+     * 
+     * @param listener 
+     */
+    public void add(ExposureCheckable listener) {
+        // Scheduled before the first check, so a check which leads to remove isn't undone.
+        ScheduledCheck first = schedule(listener, currentTick + 1, currentTick);
+        listener.check(1L);
+        
+        if (pendingChecks.get(listener) == first) {
+            schedule(listener, currentTick + getCheckPeriod(listener), currentTick);
+        }
+    }
+    
+    /**
+     * Stops scheduling the given listener.
+     * 
+     * @param listener 
+     */
+    public void remove(ExposureCheckable listener) {
+        pendingChecks.remove(listener);
+    }
+    
+    /**
+     * Moves the next check of the given listener up to the next tick. Does
+     * nothing if the listener is not being scheduled or is already due then.
+     * 
+     * @param listener 
+     */
+    public void requestCheck(ExposureCheckable listener) {
+        ScheduledCheck pending = pendingChecks.get(listener);
+        
+        if (pending != null && pending.dueTick > currentTick + 1) {
+            schedule(listener, currentTick + 1, pending.lastCheckTick);
+        }
+    }
+    
+    /**
+     * @return The number of listeners being scheduled.
+     */
+    public int size() {
+        return pendingChecks.size();
+    }
+    
+    /**
+     * Decides how many ticks to wait before checking the given listener again,
+     * based on the check it has just had.
+     * 
+     * @param listener
+     * @return The number of ticks until the next check, at least 1.
+     */
+    private static long getCheckPeriod(ExposureCheckable listener) {
+        ExposureTimer timer = listener.getExposureTimer();
+        
+        // Exposed; check often, and never later than the tick damage is due:
+        if (timer.isExposed()) {
+            return Math.min(EXPOSED_CHECK_PERIOD, timer.getTicksUntilDamage());
+        }
+        
+        // Spread players' checks across the range so they don't all land in the same tick.
+        long spread = Math.abs((long) listener.getCheckId().hashCode()) % (MAX_SAFE_CHECK_PERIOD - MIN_SAFE_CHECK_PERIOD + 1);
+        return MIN_SAFE_CHECK_PERIOD + spread;
+    }
+    
+    /**
+     * Replaces the pending check of the given listener.
+     * 
+     * @param listener
+     * @param dueTick Tick the check is due.
+     * @param lastCheckTick Tick the listener was last checked.
+     * 
+     * @return The new pending check.
+     */
+    private ScheduledCheck schedule(ExposureCheckable listener, long dueTick, long lastCheckTick) {
+        ScheduledCheck check = new ScheduledCheck(listener, dueTick, lastCheckTick, nextSequence++);
+        
+        pendingChecks.put(listener, check);
+        queue.add(check);
+        
+        return check;
+    }
+    
+    /**
+     * A check of a single listener, due in a certain tick.
+     */
+    private static final class ScheduledCheck implements Comparable<ScheduledCheck> {
+        
+        private final ExposureCheckable listener;
+        private final long dueTick;
+        private final long lastCheckTick;
+        private final long sequence;
+        
+        public ScheduledCheck(ExposureCheckable listener, long dueTick, long lastCheckTick, long sequence) {
+            this.listener = listener;
+            this.dueTick = dueTick;
+            this.lastCheckTick = lastCheckTick;
+            this.sequence = sequence;
+        }
+        
+        @Override
+        public int compareTo(ScheduledCheck other) {
+            if (dueTick != other.dueTick) {
+                return dueTick < other.dueTick ? -1 : 1;
+            }
+            
+            return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+        }
+        
+    }
+    
+}
@@ -0,0 +1,54 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.timing;
+
+import java.util.UUID;
+
+/**
+ * Something whose exposure is checked by an <code>AdaptiveCheckScheduler</code>,
+ * normally a <code>SpacesuitListener</code>.
+ * 
+ * @author Trystan Cannon
+ */
+public interface ExposureCheckable {
+    
+    /**
+     * Checks whether or not the player is exposed, damaging them if they are
+     * due for it.
+     * 
+     * @param ticksSinceLastCheck Number of ticks since the previous check.
+     */
+    void check(long ticksSinceLastCheck);
+    
+    /**
+     * @return The timer measuring the player's exposure.
+     */
+    ExposureTimer getExposureTimer();
+    
+    /**
+     * @return The id of the player being checked, used to spread their checks across ticks.
+     */
+    UUID getCheckId();
+    
+}
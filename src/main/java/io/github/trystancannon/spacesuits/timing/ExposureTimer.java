@@ -0,0 +1,255 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.timing;
+
+import io.github.trystancannon.spacesuits.event.SpacesuitListener;
+
+/**
+ * An <code>ExposureTimer</code> measures how long a single player has been
+ * without their space suit and decides when they are due to be damaged for it.
+ * 
+ * In <code>TICKS</code> mode, exposure is counted in ticks, and damage is due on
+ * every <code>DAMAGE_INTERVAL</code>th exposed tick. Checks don't need to be made
+ * every tick: the ticks between two exposed checks are all counted as exposed.
+ * A change of state is assumed to have happened in the tick just before the
+ * check which sees it, which is exactly the case when checks are made every tick
+ * or when a check is requested as soon as the change happens.
+ * 
+ * In <code>REAL_TIME</code> mode, the time between checks is measured with
+ * <code>System.nanoTime</code> and damage is due for every <code>DAMAGE_INTERVAL_NANOS</code>
+ * of exposure. If several intervals have passed since the last check (the
+ * server froze, or checks were spaced out), all of them are due at once, up to
+ * <code>MAX_CATCH_UP_DAMAGE</code>. As in <code>TICKS</code> mode, a player who
+ * has only now been found exposed is charged for a single tick, however long
+ * it has been since the last check, so how often checks are made never changes
+ * when damage lands.
+ * 
+ * @author Trystan Cannon
+ */
+public final class ExposureTimer {
+    
+    /**
+     * The number of nanoseconds in a server tick when the server is running
+     * at full speed.
+     */
+    public static final long NANOS_PER_TICK = 50000000L;
+    
+    /**
+     * The real time of exposure between each time a player is damaged in
+     * <code>REAL_TIME</code> mode; the same as <code>DAMAGE_INTERVAL</code>
+     * ticks at full speed.
+     */
+    public static final long DAMAGE_INTERVAL_NANOS = SpacesuitListener.DAMAGE_INTERVAL * NANOS_PER_TICK;
+    
+    /**
+     * The most damage events which can be due from a single check. Any more
+     * elapsed intervals than this are forgiven, so that a long server freeze
+     * doesn't kill every exposed player the moment it ends.
+     */
+    public static final int MAX_CATCH_UP_DAMAGE = 5;
+    
+    /**
+     * How exposure is measured.
+     */
+    private final TimingMode mode;
+    
+    /**
+     * The number of exposed checks since the player last wore their suit.
+     * Used in <code>TICKS</code> mode.
+     */
+    private long ticksWithoutSuit = 0;
+    
+    /**
+     * The exposure, in nanoseconds, not yet converted into damage. Used in
+     * <code>REAL_TIME</code> mode.
+     */
+    private long exposureNanos = 0;
+    
+    /**
+     * The monotonic time of the last check, -1 if there has been none.
+     */
+    private long lastCheckNanos = -1;
+    
+    /**
+     * The exposure, in nanoseconds, added by the last exposed check.
+     */
+    private long lastExposureNanos = 0;
+    
+    /**
+     * Whether or not the player was exposed at the last check.
+     */
+    private boolean exposed = false;
+    
+    public ExposureTimer(TimingMode mode) {
+        this.mode = mode;
+    }
+    
+    /**
+     * @return How exposure is measured by this timer.
+     */
+    public TimingMode getMode() {
+        return mode;
+    }
+    
+    /**
+     * Records a check at which the player was without their suit.
+     * 
+     * @param nowNanos Current <code>System.nanoTime</code>.
+     * @param ticksSinceLastCheck Number of ticks since the previous check; 1 when checking every tick.
+     * 
+     * @return The number of damage events now due.
+     */
+    public int checkExposed(long nowNanos, long ticksSinceLastCheck) {
+        boolean wasExposed = exposed;
+        exposed = true;
+        
+        if (mode == TimingMode.TICKS) {
+            // Only the tick just before this check counts if the player has only now been found exposed.
+            long exposedTicks = wasExposed ? ticksSinceLastCheck : 1;
+            long damageDue = (ticksWithoutSuit + exposedTicks) / SpacesuitListener.DAMAGE_INTERVAL - ticksWithoutSuit / SpacesuitListener.DAMAGE_INTERVAL;
+            
+            ticksWithoutSuit += exposedTicks;
+            lastExposureNanos = exposedTicks * NANOS_PER_TICK;
+            lastCheckNanos = nowNanos;
+            
+            return (int) damageDue;
+        }
+        
+        // Only the tick just before this check counts if the player has only now been found exposed.
+        lastExposureNanos = wasExposed ? nowNanos - lastCheckNanos : NANOS_PER_TICK;
+        lastCheckNanos = nowNanos;
+        exposureNanos += lastExposureNanos;
+        
+        long damageDue = exposureNanos / DAMAGE_INTERVAL_NANOS;
+        exposureNanos -= damageDue * DAMAGE_INTERVAL_NANOS;
+        
+        return (int) Math.min(damageDue, MAX_CATCH_UP_DAMAGE);
+    }
+    
+    /**
+     * Records a check at which the player was wearing their suit, resetting
+     * their exposure.
+     * 
+     * @param nowNanos Current <code>System.nanoTime</code>.
+     */
+    public void checkSuited(long nowNanos) {
+        ticksWithoutSuit = 0;
+        exposureNanos = 0;
+        lastCheckNanos = nowNanos;
+        exposed = false;
+    }
+    
+    /**
+     * Records a check at which the player could not be damaged (they were not
+     * in a space world, or could bypass the damage). Exposure so far is kept,
+     * but no more is added after the tick just before this check.
+     * 
+     * @param nowNanos Current <code>System.nanoTime</code>.
+     * @param ticksSinceLastCheck Number of ticks since the previous check; 1 when checking every tick.
+     */
+    public void checkPaused(long nowNanos, long ticksSinceLastCheck) {
+        // Player was exposed up until the tick before this check:
+        if (exposed) {
+            if (mode == TimingMode.TICKS) {
+                ticksWithoutSuit += ticksSinceLastCheck - 1;
+            } else {
+                exposureNanos += Math.max(0, nowNanos - lastCheckNanos - NANOS_PER_TICK);
+            }
+        }
+        
+        lastCheckNanos = nowNanos;
+        exposed = false;
+    }
+    
+    /**
+     * Replaces the exposure counted towards the next damage, such as with the
+     * exposure a player built up on another server. Does not change whether the
+     * player is exposed; that is decided by the next check.
+     * 
+     * @param exposureNanos 
+     */
+    public void restoreExposure(long exposureNanos) {
+        if (mode == TimingMode.TICKS) {
+            ticksWithoutSuit = exposureNanos / NANOS_PER_TICK;
+        } else {
+            this.exposureNanos = Math.min(exposureNanos, DAMAGE_INTERVAL_NANOS - 1);
+        }
+    }
+    
+    /**
+     * @return <code>true</code> if the player was exposed at the last check.
+     */
+    public boolean isExposed() {
+        return exposed;
+    }
+    
+    /**
+     * @return The exposure, in nanoseconds, counted towards the next damage.
+     */
+    public long getExposureNanos() {
+        return mode == TimingMode.TICKS ? ticksWithoutSuit % SpacesuitListener.DAMAGE_INTERVAL * NANOS_PER_TICK : exposureNanos;
+    }
+    
+    /**
+     * Gets the number of ticks until the player is next due for damage, if
+     * they stay exposed. In <code>REAL_TIME</code> mode this assumes the server
+     * is running at full speed.
+     * 
+     * @return The number of ticks until the next damage, at least 1.
+     */
+    public long getTicksUntilDamage() {
+        if (mode == TimingMode.TICKS) {
+            return SpacesuitListener.DAMAGE_INTERVAL - ticksWithoutSuit % SpacesuitListener.DAMAGE_INTERVAL;
+        }
+        
+        return Math.max(1, (DAMAGE_INTERVAL_NANOS - exposureNanos + NANOS_PER_TICK - 1) / NANOS_PER_TICK);
+    }
+    
+    /**
+     * Estimates the <code>System.nanoTime</code> at which the player will next be
+     * damaged, if they stay exposed. In <code>TICKS</code> mode this assumes the
+     * server runs at full speed from the last check on.
+     * 
+     * @return The estimated time of the next damage, -1 if there has been no check.
+     */
+    public long getDamageDeadlineNanos() {
+        if (lastCheckNanos == -1) {
+            return -1;
+        }
+        
+        if (mode == TimingMode.TICKS) {
+            return lastCheckNanos + getTicksUntilDamage() * NANOS_PER_TICK;
+        }
+        
+        return lastCheckNanos + DAMAGE_INTERVAL_NANOS - exposureNanos;
+    }
+    
+    /**
+     * @return The exposure, in nanoseconds, added by the last exposed check.
+     */
+    public long getLastExposureNanos() {
+        return lastExposureNanos;
+    }
+    
+}
@@ -0,0 +1,77 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.timing;
+
+/**
+ * The ways in which the time a player spends without their space suit can be
+ * measured.
+ * 
+ * @author Trystan Cannon
+ */
+public enum TimingMode {
+    
+    /**
+     * Exposure is measured by counting server ticks. When the server lags,
+     * ticks take longer, and so does the real time before a player is damaged.
+     */
+    TICKS("ticks"),
+    
+    /**
+     * Exposure is measured with the monotonic clock (<code>System.nanoTime</code>),
+     * so players are damaged on the same real-time schedule no matter how
+     * slowly the server is ticking.
+     */
+    REAL_TIME("realtime");
+    
+    /**
+     * The name of the mode as it is written in the settings file.
+     */
+    private final String settingName;
+    
+    private TimingMode(String settingName) {
+        this.settingName = settingName;
+    }
+    
+    /**
+     * @return The name of the mode as it is written in the settings file.
+     */
+    public String getSettingName() {
+        return settingName;
+    }
+    
+    /**
+     * @param settingName
+     * @return The mode with the given setting name, <code>null</code> if there is none.
+     */
+    public static TimingMode fromSettingName(String settingName) {
+        for (TimingMode mode : values()) {
+            if (mode.settingName.equalsIgnoreCase(settingName)) {
+                return mode;
+            }
+        }
+        
+        return null;
+    }
+    
+}
@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.timing;
+
+/**
+ * A <code>TpsMonitor</code> is a <code>Runnable</code> which runs every tick,
+ * timing each tick with the monotonic clock to find the server's current ticks
+ * per second (TPS).
+ * 
+ * While the server is overloaded, the monitor recommends that exposure checks
+ * be made less often. This only lightens the load: in <code>REAL_TIME</code>
+ * mode, exposure is measured by the clock rather than by counting checks, so
+ * checking less often does not change when players are damaged.
+ * 
+ * @author Trystan Cannon
+ */
+public final class TpsMonitor implements Runnable {
+    
+    /**
+     * The number of ticks per second when the server is running at full speed.
+     */
+    public static final double MAX_TPS = 20.0;
+    
+    /**
+     * The server is considered overloaded once its TPS falls below this.
+     */
+    public static final double OVERLOADED_TPS = 18.0;
+    
+    /**
+     * An overloaded server is considered recovered once its TPS rises above this.
+     * Kept above <code>OVERLOADED_TPS</code> so the check period doesn't flap.
+     */
+    public static final double RECOVERED_TPS = 19.5;
+    
+    /**
+     * The number of ticks between exposure checks while the server is overloaded.
+     */
+    public static final long OVERLOADED_CHECK_PERIOD = 5L;
+    
+    /**
+     * The number of most recent ticks averaged to find the TPS.
+     */
+    private static final int SAMPLE_TICKS = 100;
+    
+    /**
+     * The duration, in nanoseconds, of each of the most recent ticks.
+     */
+    private final long[] tickNanos = new long[SAMPLE_TICKS];
+    
+    /**
+     * The sum of <code>tickNanos</code>, kept up to date as samples are replaced.
+     */
+    private long totalTickNanos = 0;
+    
+    /**
+     * The number of samples in <code>tickNanos</code>, up to <code>SAMPLE_TICKS</code>.
+     */
+    private int samples = 0;
+    
+    /**
+     * The monotonic time of the last run, -1 if the monitor has not yet run.
+     */
+    private long lastRunNanos = -1;
+    
+    /**
+     * The number of ticks since the monitor was started.
+     */
+    private long currentTick = 0;
+    
+    /**
+     * Whether or not the server is currently considered overloaded.
+     */
+    private boolean overloaded = false;
+    
+    /**
+     * Times the tick which has just passed. Should be scheduled to repeat
+     * every tick.
+     */
+    @Override
+    public void run() {
+        long now = System.nanoTime();
+        
+        if (lastRunNanos != -1) {
+            int slot = (int) (currentTick % SAMPLE_TICKS);
+            
+            // Replace the oldest sample once the ring is full.
+            totalTickNanos += (now - lastRunNanos) - tickNanos[slot];
+            tickNanos[slot] = now - lastRunNanos;
+            samples = Math.min(samples + 1, SAMPLE_TICKS);
+        }
+        
+        lastRunNanos = now;
+        currentTick++;
+        
+        double tps = getTps();
+        
+        if (overloaded && tps > RECOVERED_TPS) {
+            overloaded = false;
+        } else if (!overloaded && tps < OVERLOADED_TPS) {
+            overloaded = true;
+        }
+    }
+    
+    /**
+     * @return The average TPS over the most recent ticks, at most <code>MAX_TPS</code>.
+     */
+    public double getTps() {
+        if (samples == 0 || totalTickNanos <= 0) {
+            return MAX_TPS;
+        }
+        
+        return Math.min(MAX_TPS, 1000000000.0 * samples / totalTickNanos);
+    }
+    
+    /**
+     * @return The number of ticks since the monitor was started.
+     */
+    public long getCurrentTick() {
+        return currentTick;
+    }
+    
+    /**
+     * @return <code>true</code> if the server is currently overloaded.
+     */
+    public boolean isOverloaded() {
+        return overloaded;
+    }
+    
+    /**
+     * @return The number of ticks to wait between exposure checks in <code>REAL_TIME</code> mode.
+     */
+    public long getCheckPeriod() {
+        return overloaded ? OVERLOADED_CHECK_PERIOD : 1L;
+    }
+    
+}
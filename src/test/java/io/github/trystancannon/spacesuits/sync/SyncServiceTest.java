@@ -0,0 +1,555 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.sync;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of <code>SyncService</code>, running nodes against each other over
+ * <code>LoopbackTransport</code>s (and a <code>SharedDirectoryTransport</code>
+ * for restarts). Syncs are driven by the test instead of the scheduler.
+ * 
+ * @author Trystan Cannon
+ */
+public class SyncServiceTest {
+    
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    
+    private static final Logger QUIET = Logger.getAnonymousLogger();
+    
+    static {
+        QUIET.setLevel(Level.OFF);
+    }
+    
+    private final UUID world = UUID.randomUUID();
+    
+    @Test
+    public void changeReachesOtherNode() {
+        LoopbackTransport.Bus bus = new LoopbackTransport.Bus();
+        Node first = new Node("a", bus.connect("a"));
+        Node second = new Node("b", bus.connect("b"));
+        
+        first.service.recordSpaceWorld(world, true);
+        first.service.recordExposure(world, 1234L);
+        first.syncAndApply();
+        second.syncAndApply();
+        
+        assertEquals(Long.valueOf(1L), second.spaceWorlds.get(world));
+        assertEquals(Long.valueOf(1234L), second.exposures.get(world));
+        assertTrue(first.applied.isEmpty());
+    }
+    
+    @Test
+    public void duplicateDeliveryIsAppliedOnce() {
+        LoopbackTransport.Bus bus = new LoopbackTransport.Bus();
+        Node first = new Node("a", bus.connect("a"));
+        Node second = new Node("b", new DuplicatingTransport(bus.connect("b")));
+        
+        first.service.recordSpaceWorld(world, true);
+        first.syncAndApply();
+        second.syncAndApply();
+        
+        assertEquals(1, second.applied.size());
+    }
+    
+    @Test
+    public void messageAtOrBelowAppliedSequenceIsDropped() throws IOException {
+        LoopbackTransport.Bus bus = new LoopbackTransport.Bus();
+        LoopbackTransport sender = bus.connect("c");
+        Node receiver = new Node("b", bus.connect("b"));
+        UUID otherWorld = UUID.randomUUID();
+        UUID thirdWorld = UUID.randomUUID();
+        
+        send(sender, "c", 5L, new SyncDelta(SyncDelta.Kind.SPACE_WORLD, world, 1L, 10L));
+        receiver.syncAndApply();
+        
+        // Same sequence delivered again with different contents, then an older sequence:
+        send(sender, "c", 5L, new SyncDelta(SyncDelta.Kind.SPACE_WORLD, otherWorld, 1L, 11L));
+        send(sender, "c", 3L, new SyncDelta(SyncDelta.Kind.SPACE_WORLD, thirdWorld, 1L, 12L));
+        receiver.syncAndApply();
+        
+        assertEquals(1, receiver.applied.size());
+        assertEquals(world, receiver.applied.get(0).getId());
+    }
+    
+    @Test
+    public void olderWriteIsIgnored() throws IOException {
+        LoopbackTransport.Bus bus = new LoopbackTransport.Bus();
+        LoopbackTransport sender = bus.connect("c");
+        Node receiver = new Node("b", bus.connect("b"));
+        
+        send(sender, "c", 1L, new SyncDelta(SyncDelta.Kind.SPACE_WORLD, world, 0L, 20L));
+        send(sender, "c", 2L, new SyncDelta(SyncDelta.Kind.SPACE_WORLD, world, 1L, 10L));
+        receiver.syncAndApply();
+        
+        assertEquals(Long.valueOf(0L), receiver.spaceWorlds.get(world));
+    }
+    
+    @Test
+    public void writesWithEqualClocksConvergeOnGreaterNodeId() throws IOException {
+        SyncDelta fromC = new SyncDelta(SyncDelta.Kind.SPACE_WORLD, world, 0L, 100L);
+        SyncDelta fromD = new SyncDelta(SyncDelta.Kind.SPACE_WORLD, world, 1L, 100L);
+        
+        // One node hears c then d, the other d then c.
+        LoopbackTransport.Bus firstBus = new LoopbackTransport.Bus();
+        Node first = new Node("a", firstBus.connect("a"));
+        send(firstBus.connect("c"), "c", 1L, fromC);
+        send(firstBus.connect("d"), "d", 1L, fromD);
+        first.syncAndApply();
+        
+        LoopbackTransport.Bus secondBus = new LoopbackTransport.Bus();
+        Node second = new Node("b", secondBus.connect("b"));
+        send(secondBus.connect("d"), "d", 1L, fromD);
+        send(secondBus.connect("c"), "c", 1L, fromC);
+        second.syncAndApply();
+        
+        assertEquals(Long.valueOf(1L), first.spaceWorlds.get(world));
+        assertEquals(first.spaceWorlds, second.spaceWorlds);
+    }
+    
+    @Test
+    public void nodesConvergeAfterConcurrentWrites() {
+        LoopbackTransport.Bus bus = new LoopbackTransport.Bus();
+        Node first = new Node("a", bus.connect("a"));
+        Node second = new Node("b", bus.connect("b"));
+        
+        first.service.recordSpaceWorld(world, true);
+        first.spaceWorlds.put(world, 1L);
+        second.service.recordSpaceWorld(world, false);
+        second.spaceWorlds.put(world, 0L);
+        
+        first.syncAndApply();
+        second.syncAndApply();
+        first.syncAndApply();
+        
+        assertEquals(first.spaceWorlds, second.spaceWorlds);
+    }
+    
+    @Test
+    public void failedSendIsRetried() {
+        LoopbackTransport.Bus bus = new LoopbackTransport.Bus();
+        FailingTransport failing = new FailingTransport(bus.connect("a"));
+        Node first = new Node("a", failing);
+        Node second = new Node("b", bus.connect("b"));
+        
+        // Only the retry may carry the change:
+        first.service.fullStateIntervalMillis = Long.MAX_VALUE;
+        failing.failures = 1;
+        first.service.recordSpaceWorld(world, true);
+        first.syncAndApply();
+        second.syncAndApply();
+        
+        assertTrue(second.applied.isEmpty());
+        
+        first.syncAndApply();
+        second.syncAndApply();
+        
+        assertEquals(Long.valueOf(1L), second.spaceWorlds.get(world));
+    }
+    
+    @Test
+    public void retriedChangeDoesNotReplaceNewerChange() {
+        LoopbackTransport.Bus bus = new LoopbackTransport.Bus();
+        FailingTransport failing = new FailingTransport(bus.connect("a"));
+        final Node first = new Node("a", failing);
+        Node second = new Node("b", bus.connect("b"));
+        
+        // Toggled on, then toggled off while the send of "on" is failing. Only the retry may carry either change:
+        first.service.fullStateIntervalMillis = Long.MAX_VALUE;
+        failing.failures = 1;
+        failing.duringFailure = new Runnable() {
+            
+            @Override
+            public void run() {
+                first.service.recordSpaceWorld(world, false);
+            }
+            
+        };
+        
+        first.service.recordSpaceWorld(world, true);
+        first.syncAndApply();
+        first.syncAndApply();
+        first.syncAndApply();
+        second.syncAndApply();
+        
+        assertEquals(Long.valueOf(0L), second.spaceWorlds.get(world));
+        assertEquals(1, second.applied.size());
+    }
+    
+    @Test
+    public void restartedNodeKeepsItsOwnNewerWrite() throws IOException {
+        Node first = new Node("a", new SharedDirectoryTransport(folder.getRoot(), "a"));
+        Node second = new Node("b", new SharedDirectoryTransport(folder.getRoot(), "b"));
+        
+        second.service.recordSpaceWorld(world, true);
+        second.syncAndApply();
+        first.syncAndApply();
+        first.service.recordSpaceWorld(world, false);
+        first.syncAndApply();
+        second.syncAndApply();
+        
+        assertEquals(Long.valueOf(0L), second.spaceWorlds.get(world));
+        
+        // Restart the first node; the second node's older write is still in the directory.
+        first.service.stop();
+        Node restarted = new Node("a", new SharedDirectoryTransport(folder.getRoot(), "a"));
+        restarted.syncAndApply();
+        
+        assertTrue(restarted.applied.isEmpty());
+        
+        // And its next write is still newer than everything it sent before:
+        restarted.service.recordSpaceWorld(world, true);
+        restarted.syncAndApply();
+        second.syncAndApply();
+        
+        assertEquals(Long.valueOf(1L), second.spaceWorlds.get(world));
+    }
+    
+    @Test
+    public void restartedNodeDoesNotReapplyStaleWriteOnceItsOwnHasExpired() throws IOException {
+        File stateFile = new File(folder.getRoot(), "a.state");
+        Node first = new Node("a", new SharedDirectoryTransport(folder.getRoot(), "a"), stateFile);
+        Node second = new Node("b", new SharedDirectoryTransport(folder.getRoot(), "b"));
+        
+        second.service.recordSpaceWorld(world, true);
+        second.syncAndApply();
+        first.syncAndApply();
+        first.service.recordSpaceWorld(world, false);
+        first.syncAndApply();
+        second.syncAndApply();
+        
+        assertEquals(Long.valueOf(0L), second.spaceWorlds.get(world));
+        
+        // Long after, the first node's next send deletes its own expired message, but not the second's:
+        expireMessages();
+        first.service.recordSpaceWorld(UUID.randomUUID(), true);
+        first.syncAndApply();
+        first.service.stop();
+        
+        Node restarted = new Node("a", new SharedDirectoryTransport(folder.getRoot(), "a"), stateFile);
+        restarted.syncAndApply();
+        
+        assertTrue(restarted.applied.isEmpty());
+    }
+    
+    @Test
+    public void restartedNodeRemembersWhatItAppliedAndWhichWritesAreNewer() throws IOException {
+        File stateFile = new File(folder.getRoot(), "a.state");
+        Node first = new Node("a", new SharedDirectoryTransport(folder.getRoot(), "a"), stateFile);
+        Node second = new Node("b", new SharedDirectoryTransport(folder.getRoot(), "b"));
+        
+        second.service.recordSpaceWorld(world, true);
+        second.syncAndApply();
+        first.syncAndApply();
+        first.service.recordSpaceWorld(world, false);
+        first.syncAndApply();
+        first.service.stop();
+        
+        // The first node's own messages are gone, so only its saved state can tell it what it wrote.
+        for (File file : folder.getRoot().listFiles()) {
+            if (file.getName().startsWith("a-")) {
+                file.delete();
+            }
+        }
+        
+        Node restarted = new Node("a", new SharedDirectoryTransport(folder.getRoot(), "a"), stateFile);
+        restarted.syncAndApply();
+        
+        assertTrue(restarted.applied.isEmpty());
+        
+        // A new message carrying a write older than the first node's:
+        send(new SharedDirectoryTransport(folder.getRoot(), "b"), "b", Long.MAX_VALUE / 2, new SyncDelta(SyncDelta.Kind.SPACE_WORLD, world, 1L, 1L));
+        restarted.syncAndApply();
+        
+        assertTrue(restarted.applied.isEmpty());
+    }
+    
+    @Test
+    public void expiredMessageIsNotReceived() {
+        Node first = new Node("a", new SharedDirectoryTransport(folder.getRoot(), "a"));
+        
+        first.service.recordSpaceWorld(world, true);
+        first.syncAndApply();
+        expireMessages();
+        
+        Node second = new Node("b", new SharedDirectoryTransport(folder.getRoot(), "b"));
+        second.syncAndApply();
+        
+        assertTrue(second.applied.isEmpty());
+    }
+    
+    @Test
+    public void stoppedServiceNoLongerSyncs() {
+        LoopbackTransport.Bus bus = new LoopbackTransport.Bus();
+        Node first = new Node("a", bus.connect("a"));
+        Node second = new Node("b", bus.connect("b"));
+        
+        first.service.stop();
+        first.service.recordSpaceWorld(world, true);
+        first.syncAndApply();
+        second.syncAndApply();
+        
+        assertTrue(second.applied.isEmpty());
+    }
+    
+    @Test
+    public void stopSendsQueuedChanges() {
+        LoopbackTransport.Bus bus = new LoopbackTransport.Bus();
+        Node first = new Node("a", bus.connect("a"));
+        Node second = new Node("b", bus.connect("b"));
+        
+        first.service.recordSpaceWorld(world, true);
+        first.service.stop();
+        second.syncAndApply();
+        
+        assertEquals(Long.valueOf(1L), second.spaceWorlds.get(world));
+    }
+    
+    @Test
+    public void newNodeLearnsExistingSpaceWorldsFromFullState() {
+        LoopbackTransport.Bus bus = new LoopbackTransport.Bus();
+        Node first = new Node("a", bus.connect("a"));
+        
+        first.service.recordSpaceWorld(world, true);
+        first.service.recordExposure(world, 1234L);
+        first.syncAndApply();
+        
+        Node second = new Node("b", bus.connect("b"));
+        second.syncAndApply();
+        
+        assertTrue(second.applied.isEmpty());
+        
+        // Next full state:
+        first.service.fullStateIntervalMillis = 0L;
+        first.syncAndApply();
+        second.syncAndApply();
+        
+        assertEquals(Long.valueOf(1L), second.spaceWorlds.get(world));
+        assertTrue(second.exposures.isEmpty());
+    }
+    
+    @Test
+    public void returningNodeCatchesUpOnChangesWhichExpiredWhileItWasAway() {
+        File stateFile = new File(folder.getRoot(), "b.state");
+        Node first = new Node("a", new SharedDirectoryTransport(folder.getRoot(), "a"));
+        Node second = new Node("b", new SharedDirectoryTransport(folder.getRoot(), "b"), stateFile);
+        
+        first.syncAndApply();
+        second.syncAndApply();
+        second.service.stop();
+        
+        // Changed while the second node is away, long enough for the change to expire:
+        first.service.recordSpaceWorld(world, true);
+        first.syncAndApply();
+        expireMessages();
+        
+        first.service.fullStateIntervalMillis = 0L;
+        first.syncAndApply();
+        
+        Node returned = new Node("b", new SharedDirectoryTransport(folder.getRoot(), "b"), stateFile);
+        returned.syncAndApply();
+        
+        assertEquals(Long.valueOf(1L), returned.spaceWorlds.get(world));
+    }
+    
+    @Test
+    public void writePassedOnInFullStateKeepsItsOrigin() throws IOException {
+        LoopbackTransport.Bus bus = new LoopbackTransport.Bus();
+        Node receiver = new Node("b", bus.connect("b"));
+        
+        // Same clock; the write from d wins, whoever passes on the one from c.
+        send(bus.connect("d"), "d", 1L, new SyncDelta(SyncDelta.Kind.SPACE_WORLD, world, 1L, 100L));
+        receiver.syncAndApply();
+        
+        // Only the relay hears from c:
+        Node relay = new Node("z", bus.connect("z"));
+        send(bus.connect("c"), "c", 1L, new SyncDelta(SyncDelta.Kind.SPACE_WORLD, world, 0L, 100L));
+        relay.service.fullStateIntervalMillis = 0L;
+        relay.syncAndApply();
+        relay.syncAndApply();
+        receiver.syncAndApply();
+        
+        assertEquals(Long.valueOf(0L), relay.spaceWorlds.get(world));
+        
+        assertEquals(Long.valueOf(1L), receiver.spaceWorlds.get(world));
+        assertEquals(1, receiver.applied.size());
+    }
+    
+    /**
+     * Sends the given deltas from a transport as the given node would.
+     */
+    private static void send(SyncTransport transport, String origin, long sequence, SyncDelta... deltas) throws IOException {
+        transport.send(sequence, new SyncMessage(origin, sequence, Arrays.asList(deltas)).encode());
+    }
+    
+    /**
+     * Makes every message in the shared directory older than the transport keeps them.
+     */
+    private void expireMessages() {
+        long expired = System.currentTimeMillis() - SharedDirectoryTransport.RETENTION_MILLIS - 60000L;
+        
+        for (File file : folder.getRoot().listFiles()) {
+            if (file.getName().endsWith(".delta")) {
+                assertTrue(file.setLastModified(expired));
+            }
+        }
+    }
+    
+    /**
+     * A <code>SyncService</code> and the state it has applied.
+     */
+    private static final class Node implements SyncTarget {
+        
+        private final SyncService service;
+        private final List<SyncDelta> applied = new ArrayList<>();
+        private final Map<UUID, Long> spaceWorlds = new HashMap<>();
+        private final Map<UUID, Long> exposures = new HashMap<>();
+        
+        public Node(String nodeId, SyncTransport transport) {
+            this(nodeId, transport, null);
+        }
+        
+        public Node(String nodeId, SyncTransport transport, File stateFile) {
+            this.service = new SyncService(this, transport, nodeId, stateFile, QUIET);
+        }
+        
+        public void syncAndApply() {
+            service.sync();
+            service.applyRemoteChanges();
+        }
+        
+        @Override
+        public void applySyncChanges(List<SyncDelta> changes) {
+            applied.addAll(changes);
+            
+            for (SyncDelta change : changes) {
+                (change.getKind() == SyncDelta.Kind.SPACE_WORLD ? spaceWorlds : exposures).put(change.getId(), change.getValue());
+            }
+        }
+        
+    }
+    
+    /**
+     * Delivers every message it receives twice.
+     */
+    private static final class DuplicatingTransport implements SyncTransport {
+        
+        private final SyncTransport transport;
+        
+        public DuplicatingTransport(SyncTransport transport) {
+            this.transport = transport;
+        }
+        
+        @Override
+        public void send(long sequence, byte[] message) throws IOException {
+            transport.send(sequence, message);
+        }
+        
+        @Override
+        public List<byte[]> receive() throws IOException {
+            List<byte[]> messages = new ArrayList<>();
+            
+            for (byte[] message : transport.receive()) {
+                messages.add(message);
+                messages.add(message.clone());
+            }
+            
+            return messages;
+        }
+        
+        @Override
+        public List<byte[]> recallSent() throws IOException {
+            return transport.recallSent();
+        }
+        
+        @Override
+        public void close() {
+            transport.close();
+        }
+        
+    }
+    
+    /**
+     * Fails the next <code>failures</code> sends, running <code>duringFailure</code>
+     * (if set) as each one fails.
+     */
+    private static final class FailingTransport implements SyncTransport {
+        
+        private final SyncTransport transport;
+        private int failures = 0;
+        private Runnable duringFailure = null;
+        
+        public FailingTransport(SyncTransport transport) {
+            this.transport = transport;
+        }
+        
+        @Override
+        public void send(long sequence, byte[] message) throws IOException {
+            if (failures > 0) {
+                failures--;
+                
+                if (duringFailure != null) {
+                    duringFailure.run();
+                }
+                
+                throw new IOException("Send failed on purpose.");
+            }
+            
+            transport.send(sequence, message);
+        }
+        
+        @Override
+        public List<byte[]> receive() throws IOException {
+            return transport.receive();
+        }
+        
+        @Override
+        public List<byte[]> recallSent() throws IOException {
+            return transport.recallSent();
+        }
+        
+        @Override
+        public void close() {
+            transport.close();
+        }
+        
+    }
+    
+}
@@ -0,0 +1,311 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2015 Trystan Cannon.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package io.github.trystancannon.spacesuits.timing;
+
+import io.github.trystancannon.spacesuits.event.SpacesuitListener;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Differential tests of the <code>AdaptiveCheckScheduler</code> and the
+ * <code>ExposureTimer</code> against the original <code>SpacesuitListener</code>
+ * algorithm: checked every tick, counting each exposed tick and damaging on
+ * every <code>DAMAGE_INTERVAL</code>th, resetting the count when suited and
+ * leaving it alone outside of space worlds.
+ * 
+ * Random traces of players taking their suits off and on and moving between
+ * space and normal worlds are played through the original algorithm, through
+ * an <code>ExposureTimer</code> checked every tick and through the scheduler,
+ * in both timing modes with the server at full speed. The ticks in which
+ * players are damaged must be identical.
+ * 
+ * @author Trystan Cannon
+ */
+public class AdaptiveCheckSchedulerTest {
+    
+    private static final int TRACES = 200;
+    private static final int PLAYERS_PER_TRACE = 8;
+    private static final int TICKS_PER_TRACE = 20000;
+    
+    /**
+     * The tick being played. Shared by every <code>TracedPlayer</code>.
+     */
+    private long currentTick = 0;
+    
+    @Test
+    public void ticksModeDamagesInTheSameTicksAsTheOriginalListener() {
+        playTraces(TimingMode.TICKS, new Random(0x5350414345L), TRACES, -1);
+    }
+    
+    @Test
+    public void realTimeModeDamagesInTheSameTicksAsTheOriginalListener() {
+        playTraces(TimingMode.REAL_TIME, new Random(0x5245414cL), TRACES, -1);
+    }
+    
+    @Test
+    public void frequentChangesDamageInTheSameTicksAsTheOriginalListener() {
+        playTraces(TimingMode.TICKS, new Random(0x53554954L), TRACES / 4, 0.2);
+        playTraces(TimingMode.REAL_TIME, new Random(0x53554954L), TRACES / 4, 0.2);
+    }
+    
+    @Test
+    public void removedPlayerIsNoLongerChecked() {
+        AdaptiveCheckScheduler scheduler = new AdaptiveCheckScheduler();
+        TracedPlayer player = new TracedPlayer(UUID.randomUUID(), TimingMode.TICKS);
+        
+        player.suited = false;
+        scheduler.add(player);
+        scheduler.remove(player);
+        
+        for (currentTick = 1; currentTick <= 1000; currentTick++) {
+            scheduler.run();
+        }
+        
+        assertEquals(0, scheduler.size());
+        assertEquals(1, player.checks);
+        assertTrue(player.damageTicks.isEmpty());
+    }
+    
+    @Test
+    public void playerRemovedByTheirOwnCheckIsNotRescheduled() {
+        final AdaptiveCheckScheduler scheduler = new AdaptiveCheckScheduler();
+        
+        // Kicked, and so removed, when first damaged:
+        TracedPlayer player = new TracedPlayer(UUID.randomUUID(), TimingMode.TICKS) {
+            
+            @Override
+            public void check(long ticksSinceLastCheck) {
+                super.check(ticksSinceLastCheck);
+                
+                if (!damageTicks.isEmpty()) {
+                    scheduler.remove(this);
+                }
+            }
+            
+        };
+        
+        player.suited = false;
+        currentTick = 0;
+        scheduler.add(player);
+        
+        for (currentTick = 1; currentTick <= 1000; currentTick++) {
+            scheduler.run();
+        }
+        
+        int checks = player.checks;
+        
+        for (; currentTick <= 2000; currentTick++) {
+            scheduler.run();
+        }
+        
+        assertEquals(0, scheduler.size());
+        assertEquals(1, player.damageTicks.size());
+        assertEquals(checks, player.checks);
+    }
+    
+    @Test
+    public void playerRemovedByTheirFirstCheckIsNotScheduled() {
+        final AdaptiveCheckScheduler scheduler = new AdaptiveCheckScheduler();
+        
+        TracedPlayer player = new TracedPlayer(UUID.randomUUID(), TimingMode.TICKS) {
+            
+            @Override
+            public void check(long ticksSinceLastCheck) {
+                super.check(ticksSinceLastCheck);
+                scheduler.remove(this);
+            }
+            
+        };
+        
+        currentTick = 0;
+        scheduler.add(player);
+        
+        for (currentTick = 1; currentTick <= 100; currentTick++) {
+            scheduler.run();
+        }
+        
+        assertEquals(0, scheduler.size());
+        assertEquals(1, player.checks);
+    }
+    
+    /**
+     * Plays random traces through the original algorithm, through timers
+     * checked every tick and through the adaptive scheduler.
+     * 
+     * @param mode
+     * @param random
+     * @param traces Number of traces to play.
+     * @param changeChance Chance each tick that a player changes their suit, random per trace if negative.
+     */
+    private void playTraces(TimingMode mode, Random random, int traces, double changeChance) {
+        for (int trace = 0; trace < traces; trace++) {
+            // How often players change their suit or world varies between traces.
+            playTrace(mode, random, changeChance < 0 ? random.nextDouble() * 0.01 : changeChance, trace);
+        }
+    }
+    
+    /**
+     * Plays a single random trace and compares the ticks each player was damaged.
+     * 
+     * @param mode
+     * @param random
+     * @param changeChance Chance each tick that a player changes their suit.
+     * @param trace Number of the trace, for failure messages.
+     */
+    private void playTrace(TimingMode mode, Random random, double changeChance, int trace) {
+        AdaptiveCheckScheduler scheduler = new AdaptiveCheckScheduler();
+        OriginalPlayer[] original = new OriginalPlayer[PLAYERS_PER_TRACE];
+        TracedPlayer[] everyTick = new TracedPlayer[PLAYERS_PER_TRACE];
+        TracedPlayer[] adaptive = new TracedPlayer[PLAYERS_PER_TRACE];
+        
+        currentTick = 0;
+        
+        for (int player = 0; player < PLAYERS_PER_TRACE; player++) {
+            UUID id = UUID.randomUUID();
+            original[player] = new OriginalPlayer();
+            everyTick[player] = new TracedPlayer(id, mode);
+            adaptive[player] = new TracedPlayer(id, mode);
+            
+            original[player].run();
+            everyTick[player].check(1L);
+            scheduler.add(adaptive[player]);
+        }
+        
+        for (currentTick = 1; currentTick < TICKS_PER_TRACE; currentTick++) {
+            for (int player = 0; player < PLAYERS_PER_TRACE; player++) {
+                original[player].run();
+                everyTick[player].check(1L);
+            }
+            
+            scheduler.run();
+            
+            // Changes happen between checks, and ask for a check as the plugin's events do:
+            for (int player = 0; player < PLAYERS_PER_TRACE; player++) {
+                if (random.nextDouble() < changeChance) {
+                    boolean suited = !original[player].suited;
+                    original[player].suited = everyTick[player].suited = adaptive[player].suited = suited;
+                    scheduler.requestCheck(adaptive[player]);
+                }
+                
+                if (random.nextDouble() < changeChance / 4) {
+                    boolean inSpaceWorld = !original[player].inSpaceWorld;
+                    original[player].inSpaceWorld = everyTick[player].inSpaceWorld = adaptive[player].inSpaceWorld = inSpaceWorld;
+                    scheduler.requestCheck(adaptive[player]);
+                }
+            }
+        }
+        
+        for (int player = 0; player < PLAYERS_PER_TRACE; player++) {
+            String description = mode + " damage ticks of player " + player + " in trace " + trace;
+            
+            assertEquals(description + ", checked every tick", original[player].damageTicks, everyTick[player].damageTicks);
+            assertEquals(description + ", adaptive", original[player].damageTicks, adaptive[player].damageTicks);
+        }
+    }
+    
+    /**
+     * The check made every tick by <code>SpacesuitListener</code> before the
+     * <code>ExposureTimer</code> existed.
+     */
+    private final class OriginalPlayer implements Runnable {
+        
+        private final List<Long> damageTicks = new ArrayList<>();
+        private long ticksWithoutSuit = 0;
+        private boolean suited = true;
+        private boolean inSpaceWorld = true;
+        
+        @Override
+        public void run() {
+            if (inSpaceWorld) {
+                if (!suited) {
+                    ticksWithoutSuit++;
+                    
+                    if (ticksWithoutSuit % SpacesuitListener.DAMAGE_INTERVAL == 0) {
+                        damageTicks.add(currentTick);
+                    }
+                } else {
+                    ticksWithoutSuit = 0;
+                }
+            }
+        }
+        
+    }
+    
+    /**
+     * A player whose suit and world are set by the test, checked the same way
+     * <code>SpacesuitListener.check</code> does.
+     */
+    private class TracedPlayer implements ExposureCheckable {
+        
+        private final UUID id;
+        private final ExposureTimer timer;
+        protected final List<Long> damageTicks = new ArrayList<>();
+        
+        private boolean suited = true;
+        private boolean inSpaceWorld = true;
+        private int checks = 0;
+        
+        public TracedPlayer(UUID id, TimingMode mode) {
+            this.id = id;
+            this.timer = new ExposureTimer(mode);
+        }
+        
+        @Override
+        public void check(long ticksSinceLastCheck) {
+            // The server runs at full speed.
+            long now = currentTick * ExposureTimer.NANOS_PER_TICK;
+            checks++;
+            
+            if (inSpaceWorld && !suited) {
+                int damageDue = timer.checkExposed(now, ticksSinceLastCheck);
+                
+                for (int hit = 0; hit < damageDue; hit++) {
+                    damageTicks.add(currentTick);
+                }
+            } else if (inSpaceWorld) {
+                timer.checkSuited(now);
+            } else {
+                timer.checkPaused(now, ticksSinceLastCheck);
+            }
+        }
+        
+        @Override
+        public ExposureTimer getExposureTimer() {
+            return timer;
+        }
+        
+        @Override
+        public UUID getCheckId() {
+            return id;
+        }
+        
+    }
+    
+}